@@ -0,0 +1,61 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Connessione SQLite con i suoi prepared statement: ogni query fissa viene analizzata
+// e pianificata una sola volta per connessione. Non thread-safe: Database garantisce che
+// la connessione sia usata da un solo thread alla volta (lock di scrittura o pool di lettura)
+public class CachedConnection implements AutoCloseable {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    // Contatori condivisi tra tutte le connessioni del database
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public CachedConnection(Connection connection, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    // Statement pronto all'uso, senza parametri residui dalla chiamata precedente.
+    // Va usato senza try-with-resources: lo chiude la connessione
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            hits.incrementAndGet();
+            return statement;
+        }
+
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        misses.incrementAndGet();
+        return statement;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public boolean isClosed() throws SQLException {
+        return connection.isClosed();
+    }
+
+    // Chiude gli statement e poi la connessione
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Errore chiusura statement: " + e.getMessage());
+            }
+        }
+        statements.clear();
+        connection.close();
+    }
+}
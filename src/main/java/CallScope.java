@@ -0,0 +1,154 @@
+import okhttp3.Call;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Raggruppa le chiamate HTTP avviate da un thread (e dai suoi sotto-compiti)
+// in modo da poterle annullare tutte insieme, ad esempio il ramo perdente di una ricerca parallela.
+// Uno scope può avere una scadenza (ereditata dai figli): allo scadere tutte le chiamate vengono annullate
+public class CallScope implements AutoCloseable {
+    private static final ThreadLocal<CallScope> CURRENT = new ThreadLocal<>();
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "call-scope-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CallScope parent;
+    private final Deadline deadline;
+    private final List<Call> calls = new ArrayList<>();
+    private final List<CallScope> children = new ArrayList<>();
+    private boolean cancelled;
+    private ScheduledFuture<?> expiry;
+
+    public CallScope() {
+        this(null, null);
+    }
+
+    private CallScope(CallScope parent, Deadline deadline) {
+        this.parent = parent;
+        this.deadline = deadline;
+    }
+
+    // Scope radice con scadenza: allo scadere annulla le chiamate ancora in corso (anche dei figli)
+    public static CallScope withDeadline(Deadline deadline) {
+        CallScope scope = new CallScope(null, deadline);
+        scope.expiry = TIMER.schedule(scope::cancel, deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        return scope;
+    }
+
+    // Scadenza dello scope attivo sul thread corrente (null se nessuna)
+    public static Deadline currentDeadline() {
+        CallScope scope = current();
+        return scope == null ? null : scope.deadline;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    // Scope attivo sul thread corrente (null se nessuno)
+    public static CallScope current() {
+        return CURRENT.get();
+    }
+
+    // Crea uno scope figlio di quello corrente: annullare il padre annulla anche il figlio
+    public static CallScope fork() {
+        CallScope parent = current();
+        CallScope child = new CallScope(parent, parent == null ? null : parent.deadline);
+        if (parent != null) {
+            parent.addChild(child);
+        }
+        return child;
+    }
+
+    // Lo scope corrente è stato annullato (es. ramo perdente): quello che vi è stato calcolato
+    // può essere incompleto e non va condiviso con altri chiamanti
+    public static boolean isCurrentCancelled() {
+        CallScope scope = current();
+        return scope != null && scope.isCancelled();
+    }
+
+    // Registra una chiamata nello scope corrente, se presente
+    public static void track(Call call) {
+        CallScope scope = current();
+        if (scope != null) {
+            scope.register(call);
+        }
+    }
+
+    // Esegue il compito con questo scope attivo sul thread corrente
+    public <T> T run(Callable<T> task) throws Exception {
+        CallScope previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            if (parent != null) {
+                parent.removeChild(this);
+            }
+        }
+    }
+
+    public synchronized void register(Call call) {
+        if (cancelled) {
+            call.cancel();
+        } else {
+            calls.add(call);
+        }
+    }
+
+    public void cancel() {
+        List<Call> toCancel;
+        List<CallScope> toCancelChildren;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toCancel = new ArrayList<>(calls);
+            toCancelChildren = new ArrayList<>(children);
+            calls.clear();
+            children.clear();
+        }
+        toCancel.forEach(Call::cancel);
+        toCancelChildren.forEach(CallScope::cancel);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Lavoro terminato prima della scadenza: il timer non serve più
+    @Override
+    public void close() {
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+    }
+
+    private void addChild(CallScope child) {
+        boolean cancelNow;
+        synchronized (this) {
+            cancelNow = cancelled;
+            if (!cancelNow) {
+                children.add(child);
+            }
+        }
+        if (cancelNow) {
+            child.cancel();
+        }
+    }
+
+    private synchronized void removeChild(CallScope child) {
+        children.remove(child);
+    }
+}
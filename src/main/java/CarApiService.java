@@ -1,232 +1,448 @@
 import okhttp3.*;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.Gson;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class CarApiService {
-    private final OkHttpClient client = new OkHttpClient();
+    private final HttpTransport transport = new HttpTransport();
+    private final UpstreamGuard guard = new UpstreamGuard();
     private final String userAgent;
+    private final LookupCache cache;
+    private final Gson gson = new Gson();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final CarClassifier classifier = new CarClassifier();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Strategia di fallback italiano -> inglese: sequential, parallel o hedged
+    private final String languageMode;
+    private final long hedgeDelayMs;
+    // Numero di candidati valutati per ogni ricerca
+    private final int searchCandidates;
+    // Ricerche contemporanee per le richieste con più modelli
+    private final int batchConcurrency;
+    // Notificati a ogni pagina di auto risolta (es. indice dei titoli per la modalità inline)
+    private final List<Consumer<WikiPage>> resolvedListeners = new CopyOnWriteArrayList<>();
+    // Notificati a ogni scheda salvata nel catalogo (es. preferiti in memoria)
+    private final List<Consumer<Database.Car>> catalogListeners = new CopyOnWriteArrayList<>();
+
+    // Contatori della scadenza per richiesta (CallScope.withDeadline)
+    private final AtomicLong degradedResults = new AtomicLong();
+    private final AtomicLong staleOnDeadline = new AtomicLong();
+    private final AtomicLong deadlineFailures = new AtomicLong();
 
     public CarApiService() {
         this.userAgent = Config.get("WIKIPEDIA_USER_AGENT", "CarFantasyBot/1.0");
+        this.cache = new LookupCache();
+        this.languageMode = Config.get("WIKIPEDIA_LANGUAGE_MODE", "hedged").trim().toLowerCase(Locale.ROOT);
+        this.hedgeDelayMs = Config.getLong("WIKIPEDIA_HEDGE_DELAY_MS", 250);
+        this.searchCandidates = Config.getInt("WIKIPEDIA_SEARCH_CANDIDATES", 5);
+        this.batchConcurrency = Math.max(1, Config.getInt("BATCH_MAX_CONCURRENCY", 4));
     }
 
-    // METODO 1: /dettagli - Scheda tecnica dettagliata
-    public SearchResult getModelDetailsWithImage(String model) {
+    public LookupCache getCache() {
+        return cache;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public UpstreamGuard getGuard() {
+        return guard;
+    }
+
+    // Risultati parziali (senza infobox o summary) inviati perché il tempo era finito
+    public long getDegradedResults() {
+        return degradedResults.get();
+    }
+
+    // Dati scaduti della cache serviti a tempo esaurito
+    public long getStaleOnDeadline() {
+        return staleOnDeadline.get();
+    }
+
+    // Richieste terminate con errore per tempo esaurito
+    public long getDeadlineFailures() {
+        return deadlineFailures.get();
+    }
+
+    // Prepara le connessioni verso Wikipedia italiana e inglese prima del primo utente
+    public void warmUp() {
+        int connected = transport.warmUp(userAgent, Config.getLong("HTTP_WARMUP_TIMEOUT_MS", 3000),
+                "https://it.wikipedia.org/w/api.php",
+                "https://en.wikipedia.org/w/api.php");
+        System.out.println("✓ Connessioni a Wikipedia pronte: " + connected + "/2");
+    }
+
+    // Rilascia thread e connessioni (alla chiusura del bot)
+    public void close() {
+        executor.shutdown();
+        transport.close();
+    }
+
+    public void addResolvedTitleListener(Consumer<WikiPage> listener) {
+        resolvedListeners.add(listener);
+    }
+
+    public void addCatalogListener(Consumer<Database.Car> listener) {
+        catalogListeners.add(listener);
+    }
+
+    // Salva la scheda nel catalogo (Cars) e restituisce la voce, o null se il database non risponde
+    private Database.Car saveToCatalog(String title, String lang, String summary, String imageUrl,
+                                       Map<String, String> infobox) {
+        Database.Car car;
         try {
-            String title = searchWikipedia(model);
-            if (title == null) {
-                return SearchResult.error("❌ Nessun risultato automobilistico trovato per: " + model +
-                        "\n\nℹ️ Assicurati di cercare un modello di automobile.");
+            car = Database.getInstance().upsertCar(title, lang, summary, imageUrl,
+                    infobox == null || infobox.isEmpty() ? null : gson.toJson(infobox));
+        } catch (RuntimeException e) {
+            System.err.println("Errore catalogo: " + e.getMessage());
+            return null;
+        }
+
+        if (car != null) {
+            for (Consumer<Database.Car> listener : catalogListeners) {
+                try {
+                    listener.accept(car);
+                } catch (Exception e) {
+                    System.err.println("Errore listener catalogo: " + e.getMessage());
+                }
             }
-            return fetchTechnicalDetails(title);
-        } catch (Exception e) {
-            return SearchResult.error("❌ Errore: " + e.getMessage());
         }
+        return car;
     }
 
-    public String getModelDetails(String model) {
-        try {
-            String title = searchWikipedia(model);
-            if (title == null) {
-                return "❌ Nessun risultato automobilistico trovato per: " + model +
-                        "\n\nℹ️ Assicurati di cercare un modello di automobile.";
+    private void notifyResolved(WikiPage page) {
+        for (Consumer<WikiPage> listener : resolvedListeners) {
+            try {
+                listener.accept(page);
+            } catch (Exception e) {
+                System.err.println("Errore listener titoli: " + e.getMessage());
             }
-            SearchResult result = fetchTechnicalDetails(title);
-            return result.hasError() ? result.getErrorMessage() : result.getCaption();
-        } catch (Exception e) {
-            return "❌ Errore: " + e.getMessage();
         }
     }
 
-    // METODO 2: /cerca - Informazioni generali
-    public SearchResult searchByMakeWithImage(String make) {
-        try {
-            String title = searchWikipedia(make);
-            if (title == null) {
+    // METODO 1: /dettagli - Scheda tecnica dettagliata (asincrono, su virtual thread)
+    public CompletableFuture<SearchResult> getModelDetailsWithImageAsync(String model) {
+        return getModelDetailsWithImageAsync(model, null);
+    }
+
+    // Come sopra; se la scheda tecnica non è in cache, onPreview riceve subito un'anteprima
+    // (titolo e riassunto già presenti nel risultato della ricerca) mentre la infobox viene scaricata
+    public CompletableFuture<SearchResult> getModelDetailsWithImageAsync(String model, Consumer<SearchResult> onPreview) {
+        return async(() -> {
+            WikiPage page = searchWikipedia(model);
+            if (page == null) {
+                return SearchResult.error("❌ Nessun risultato automobilistico trovato per: " + model +
+                        "\n\nℹ️ Assicurati di cercare un modello di automobile.");
+            }
+            return fetchTechnicalDetails(page, onPreview);
+        }).exceptionally(this::toErrorResult);
+    }
+
+    public SearchResult getModelDetailsWithImage(String model) {
+        return getModelDetailsWithImageAsync(model).join();
+    }
+
+    public String getModelDetails(String model) {
+        SearchResult result = getModelDetailsWithImage(model);
+        return result.hasError() ? result.getErrorMessage() : result.getCaption();
+    }
+
+    // METODO 2: /cerca - Informazioni generali (asincrono, su virtual thread)
+    public CompletableFuture<SearchResult> searchByMakeWithImageAsync(String make) {
+        return async(() -> {
+            WikiPage page = searchWikipedia(make);
+            if (page == null) {
                 return SearchResult.error("❌ Nessun risultato automobilistico trovato per: " + make +
                         "\n\nℹ️ Assicurati di cercare una marca o modello di automobile.");
             }
-            return fetchGeneralInfo(title);
-        } catch (Exception e) {
-            return SearchResult.error("❌ Errore: " + e.getMessage());
-        }
+            return fetchGeneralInfo(page);
+        }).exceptionally(this::toErrorResult);
+    }
+
+    public SearchResult searchByMakeWithImage(String make) {
+        return searchByMakeWithImageAsync(make).join();
     }
 
     public String searchByMake(String make) {
-        try {
-            String title = searchWikipedia(make);
-            if (title == null) {
-                return "❌ Nessun risultato automobilistico trovato per: " + make +
-                        "\n\nℹ️ Assicurati di cercare una marca o modello di automobile.";
-            }
-            SearchResult result = fetchGeneralInfo(title);
-            return result.hasError() ? result.getErrorMessage() : result.getCaption();
-        } catch (Exception e) {
-            return "❌ Errore: " + e.getMessage();
-        }
+        SearchResult result = searchByMakeWithImage(make);
+        return result.hasError() ? result.getErrorMessage() : result.getCaption();
     }
 
-    // Metodi privati comuni
-    private String searchWikipedia(String query) throws IOException {
-        query = query.trim();
+    // Più modelli/marche in una sola richiesta: ricerche in parallelo (al massimo BATCH_MAX_CONCURRENCY
+    // alla volta), risultati nello stesso ordine delle richieste
+    public List<SearchResult> getModelDetailsBatch(List<String> models) {
+        return batch(models, this::getModelDetailsWithImageAsync);
+    }
 
-        // Prova prima italiano, poi inglese
-        String title = searchInLanguage(query, "it");
-        if (title == null) {
-            title = searchInLanguage(query, "en");
-        }
+    public List<SearchResult> searchByMakeBatch(List<String> makes) {
+        return batch(makes, this::searchByMakeWithImageAsync);
+    }
 
-        // Verifica che il risultato sia effettivamente un'automobile
-        if (title != null && !isCarRelated(title, query)) {
-            return null;
+    private List<SearchResult> batch(List<String> queries, Function<String, CompletableFuture<SearchResult>> lookup) {
+        Semaphore slots = new Semaphore(batchConcurrency);
+        List<CompletableFuture<SearchResult>> futures = new ArrayList<>(queries.size());
+
+        for (String query : queries) {
+            slots.acquireUninterruptibly();
+            futures.add(lookup.apply(query).whenComplete((result, e) -> slots.release()));
         }
 
-        return title;
+        // Le ricerche asincrone non falliscono mai: gli errori diventano SearchResult di errore
+        return futures.stream().map(CompletableFuture::join).toList();
     }
 
-    // Verifica se il risultato è correlato ad automobili
-    private boolean isCarRelated(String title, String originalQuery) {
-        try {
-            // Ottieni le categorie della pagina Wikipedia
-            String categoriesUrl = String.format(
-                    "https://it.wikipedia.org/w/api.php?action=query&titles=%s&prop=categories&cllimit=50&format=json",
-                    URLEncoder.encode(title, StandardCharsets.UTF_8)
-            );
+    private SearchResult toErrorResult(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof DeadlineExceededException) {
+            deadlineFailures.incrementAndGet();
+            System.err.println("Tempo esaurito: " + cause.getMessage());
+            return SearchResult.upstreamError("⏱️ Wikipedia sta rispondendo troppo lentamente." +
+                    "\n\nℹ️ Riprova tra qualche istante.");
+        }
+        if (cause instanceof UpstreamUnavailableException) {
+            System.err.println("Wikipedia non disponibile: " + cause.getMessage());
+            return SearchResult.upstreamError("⚠️ Wikipedia è momentaneamente sovraccarica o non raggiungibile." +
+                    "\n\nℹ️ Riprova tra qualche istante.");
+        }
+        return SearchResult.error("❌ Errore: " + cause.getMessage());
+    }
 
-            Request request = new Request.Builder()
-                    .url(categoriesUrl)
-                    .header("User-Agent", userAgent)
-                    .build();
+    // Esegue un compito su un virtual thread, in uno scope figlio di quello corrente
+    private <T> CompletableFuture<T> async(SingleFlight.Loader<T> task) {
+        CallScope scope = CallScope.fork();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scope.run(task::load);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) return false;
+    // Attende un risultato asincrono riportando gli errori come IOException
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IOException("Richiesta interrotta", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+                    e.getCause().getCause() : e.getCause();
+            throw asIOException(cause);
+        }
+    }
 
-                String body = response.body().string();
-                JsonObject root = JsonParser.parseString(body).getAsJsonObject();
+    // Come await, ma se la richiesta esaurisce il suo tempo restituisce null (dato parziale)
+    // invece di fallire: il chiamante risponde con quello che ha
+    private <T> T awaitWithinDeadline(CompletableFuture<T> future) throws IOException {
+        Deadline deadline = CallScope.currentDeadline();
+        if (deadline == null) return await(future);
 
-                if (!root.has("query")) return false;
+        try {
+            return future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IOException("Richiesta interrotta", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+                    e.getCause().getCause() : e.getCause();
+            if (cause instanceof DeadlineExceededException || deadline.isExpired()) return null;
+            throw asIOException(cause);
+        }
+    }
 
-                JsonObject query = root.getAsJsonObject("query");
-                JsonObject pages = query.getAsJsonObject("pages");
+    // A tempo scaduto gli errori derivano dall'annullamento delle chiamate:
+    // non vanno scambiati per dati assenti (che finirebbero in cache)
+    private void throwIfDeadlineExpired(Exception e) throws DeadlineExceededException {
+        Deadline deadline = CallScope.currentDeadline();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Tempo esaurito: " + e.getMessage(), e);
+        }
+    }
 
-                // Ottieni la prima (e unica) pagina
-                String pageId = pages.keySet().iterator().next();
-                JsonObject page = pages.getAsJsonObject(pageId);
+    // Una chiamata annullata (ramo perdente della ricerca parallela) non dice nulla sui dati:
+    // l'errore va propagato invece di diventare un risultato vuoto
+    private void throwIfCancelled(Exception e) throws IOException {
+        if (CallScope.isCurrentCancelled()) {
+            throw e instanceof IOException io ? io : new IOException("Richiesta annullata", e);
+        }
+    }
 
-                if (!page.has("categories")) {
-                    // Se non ha categorie, verifica almeno il titolo
-                    return isCarKeywordInTitle(title, originalQuery);
+    // Metodi privati comuni
+    private WikiPage searchWikipedia(String query) throws IOException {
+        String cacheKey = "page:" + normalizeQuery(query);
+        WikiPage page = getCached(cacheKey, WikiPage.class);
+
+        if (page == null) {
+            // Richieste identiche concorrenti condividono la stessa ricerca
+            page = singleFlight.execute(cacheKey, () -> loadOrStale(cacheKey, WikiPage.class, () -> {
+                WikiPage found = findCarPage(query);
+                // Mettiamo in cache solo i risultati positivi
+                if (found != null) {
+                    cache.put(cacheKey, gson.toJson(found));
                 }
+                return found;
+            }));
+        }
 
-                JsonArray categories = page.getAsJsonArray("categories");
-
-                // Parole chiave che identificano automobili nelle categorie Wikipedia
-                String[] carKeywords = {
-                        "automobil", "vettur", "auto", "vehicle", "car",
-                        "ferrari", "lamborghini", "porsche", "bmw", "mercedes",
-                        "fiat", "alfa romeo", "maserati", "audi", "volkswagen",
-                        "toyota", "honda", "nissan", "mazda", "ford",
-                        "chevrolet", "dodge", "jeep", "tesla", "bugatti",
-                        "mclaren", "aston martin", "bentley", "rolls-royce",
-                        "sport", "supercar", "gt", "berlinetta", "coupé",
-                        "sedan", "suv", "crossover", "roadster", "spider",
-                        "cabriolet", "hatchback", "station wagon"
-                };
-
-                String allCategories = categories.toString().toLowerCase();
-                System.out.println("Categorie trovate: " + allCategories);
-
-                // PRIMA: Verifica se contiene categorie auto
-                boolean hasCarCategory = false;
-                for (String keyword : carKeywords) {
-                    if (allCategories.contains(keyword)) {
-                        System.out.println("✓ Match trovato per keyword auto: " + keyword);
-                        hasCarCategory = true;
-                        break;
-                    }
-                }
+        if (page != null) {
+            notifyResolved(page);
+        }
+        return page;
+    }
 
-                // Se ha categorie auto, è valido (anche se ha biografia del designer)
-                if (hasCarCategory) {
-                    return true;
-                }
+    private WikiPage findCarPage(String query) throws IOException {
+        String searchQuery = query.trim();
 
-                // Se NON ha categorie auto, verifica se è chiaramente NON-auto
-                String[] excludeKeywords = {
-                        "nati nel", "morti nel", "nati a", "morti a",
-                        "attori", "cantanti", "musicisti", "politici",
-                        "scrittori", "registi", "calciatori",
-                        "film del", "serie televisive", "album del",
-                        "singoli del", "brani musicali"
-                };
-
-                for (String exclude : excludeKeywords) {
-                    if (allCategories.contains(exclude)) {
-                        System.out.println("✗ Escluso per keyword: " + exclude);
-                        return false;
-                    }
-                }
+        // Prova prima italiano, poi inglese (l'italiano ha sempre la precedenza).
+        // In ogni lingua scegliamo il primo candidato che sia effettivamente un'automobile
+        return hedge(
+                () -> pickCarCandidate(searchCandidates(searchQuery, "it"), searchQuery),
+                () -> pickCarCandidate(searchCandidates(searchQuery, "en"), searchQuery),
+                Objects::nonNull);
+    }
 
-                // Se non troviamo categorie auto chiare, verifica il titolo
-                return isCarKeywordInTitle(title, originalQuery);
+    // Primo candidato (in ordine di rilevanza) correlato ad automobili
+    private WikiPage pickCarCandidate(List<WikiPage> candidates, String originalQuery) {
+        for (WikiPage candidate : candidates) {
+            if (classifier.isCarRelated(candidate, originalQuery)) {
+                return candidate;
             }
+        }
+        return null;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Errore verifica categoria: " + e.getMessage());
-            // In caso di errore, verifica almeno il titolo
-            return isCarKeywordInTitle(title, originalQuery);
-        }
-    }
-
-    // Verifica se il titolo contiene parole chiave auto
-    private boolean isCarKeywordInTitle(String title, String originalQuery) {
-        String titleLower = title.toLowerCase();
-        String queryLower = originalQuery.toLowerCase();
-
-        // Marche automobilistiche comuni
-        String[] carBrands = {
-                "ferrari", "lamborghini", "porsche", "bmw", "mercedes", "audi",
-                "volkswagen", "vw", "fiat", "alfa romeo", "lancia", "maserati",
-                "toyota", "honda", "nissan", "mazda", "subaru", "mitsubishi",
-                "ford", "chevrolet", "dodge", "chrysler", "jeep", "gmc",
-                "tesla", "bugatti", "mclaren", "aston martin", "bentley",
-                "rolls-royce", "jaguar", "land rover", "volvo", "saab",
-                "peugeot", "renault", "citroën", "ds", "opel", "seat",
-                "skoda", "dacia", "hyundai", "kia", "lexus", "infiniti",
-                "acura", "cadillac", "lincoln", "buick", "pagani", "koenigsegg"
-        };
-
-        // Verifica se il titolo o la query contengono una marca
-        for (String brand : carBrands) {
-            if (titleLower.contains(brand) || queryLower.contains(brand)) {
-                return true;
+    // Esegue primary e, se il risultato non è accettabile, fallback.
+    // In modalità parallel/hedged il fallback parte subito o dopo hedgeDelayMs;
+    // il risultato del primary ha sempre la precedenza e il ramo perdente viene annullato.
+    private <T> T hedge(SingleFlight.Loader<T> primary, SingleFlight.Loader<T> fallback,
+                        Predicate<T> acceptable) throws IOException {
+        if (languageMode.equals("sequential")) {
+            T result = primary.load();
+            return acceptable.test(result) ? result : fallback.load();
+        }
+
+        CallScope primaryScope = CallScope.fork();
+        Future<T> primaryFuture = executor.submit(() -> primaryScope.run(primary::load));
+
+        if (languageMode.equals("hedged") && hedgeDelayMs > 0) {
+            try {
+                T result = primaryFuture.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                // Il primary ha risposto entro il ritardo: il fallback parte solo se serve
+                return acceptable.test(result) ? result : fallback.load();
+            } catch (TimeoutException e) {
+                // Il primary è lento: lanciamo anche il fallback
+            } catch (ExecutionException e) {
+                return fallbackAfterError(asIOException(e.getCause()), fallback.load(), acceptable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                primaryScope.cancel();
+                throw new IOException("Richiesta interrotta", e);
             }
         }
 
-        // Verifica se contiene modelli/termini auto generici
-        String[] carTerms = {"gt", "turbo", "sport", "racing", "concept"};
-        for (String term : carTerms) {
-            if (titleLower.contains(term) && (titleLower.contains("auto") ||
-                    titleLower.contains("car") ||
-                    titleLower.contains("vettura"))) {
-                return true;
+        CallScope fallbackScope = CallScope.fork();
+        Future<T> fallbackFuture = executor.submit(() -> fallbackScope.run(fallback::load));
+
+        try {
+            T result = null;
+            IOException primaryError = null;
+            try {
+                result = primaryFuture.get();
+            } catch (ExecutionException e) {
+                primaryError = asIOException(e.getCause());
+            }
+
+            if (primaryError == null && acceptable.test(result)) {
+                // Vince il primary: annulliamo il fallback
+                fallbackScope.cancel();
+                fallbackFuture.cancel(true);
+                return result;
+            }
+
+            T fallbackResult;
+            try {
+                fallbackResult = fallbackFuture.get();
+            } catch (ExecutionException e) {
+                if (primaryError != null) throw primaryError;
+                throw asIOException(e.getCause());
             }
+            return primaryError != null ? fallbackAfterError(primaryError, fallbackResult, acceptable) : fallbackResult;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primaryScope.cancel();
+            fallbackScope.cancel();
+            throw new IOException("Richiesta interrotta", e);
+        }
+    }
+
+    // Se il primary è fallito per Wikipedia non disponibile e il fallback non ha trovato nulla,
+    // l'errore vero è il sovraccarico, non "nessun risultato"
+    private <T> T fallbackAfterError(IOException primaryError, T fallbackResult,
+                                     Predicate<T> acceptable) throws IOException {
+        if (!acceptable.test(fallbackResult) && primaryError instanceof UpstreamUnavailableException) {
+            throw primaryError;
+        }
+        return fallbackResult;
+    }
+
+    private IOException asIOException(Throwable t) {
+        if (t instanceof IOException io) return io;
+        if (t instanceof RuntimeException re) throw re;
+        return new IOException(t);
+    }
+
+    // Esegue una richiesta HTTP registrandola nello scope corrente (per l'annullamento);
+    // la chiamata non può durare oltre il tempo rimasto alla richiesta
+    private Response execute(HttpTransport.Endpoint endpoint, Request request) throws IOException {
+        Deadline deadline = CallScope.currentDeadline();
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Tempo esaurito prima della chiamata " + endpoint);
         }
 
-        return false;
+        Call call = transport.newCall(endpoint, request);
+        if (deadline != null) {
+            deadline.applyTo(call);
+        }
+
+        CallScope.track(call);
+        try {
+            return guard.execute(call);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (IOException e) {
+            throwIfDeadlineExpired(e);
+            throw e;
+        }
     }
 
-    private String searchInLanguage(String query, String lang) throws IOException {
+    // Ricerca combinata: una sola query generator=search restituisce i primi N candidati
+    // con categorie, miniatura ed estratto (al posto di search + categories + summary)
+    private List<WikiPage> searchCandidates(String query, String lang) throws IOException {
         String url = String.format(
-                "https://%s.wikipedia.org/w/api.php?action=query&list=search&srsearch=%s&format=json",
-                lang, URLEncoder.encode(query, StandardCharsets.UTF_8)
+                "https://%s.wikipedia.org/w/api.php?action=query&format=json&formatversion=2" +
+                        "&generator=search&gsrsearch=%s&gsrlimit=%d" +
+                        "&prop=categories|pageimages|extracts&cllimit=max" +
+                        "&piprop=thumbnail&pithumbsize=640&exintro=1&explaintext=1&exlimit=max",
+                lang, URLEncoder.encode(query, StandardCharsets.UTF_8), searchCandidates
         );
 
         Request request = new Request.Builder()
@@ -234,81 +450,210 @@ public class CarApiService {
                 .header("User-Agent", userAgent)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) return null;
+        List<WikiPage> candidates = new ArrayList<>();
 
-            String body = response.body().string();
-            JsonObject root = JsonParser.parseString(body).getAsJsonObject();
+        try (Response response = execute(HttpTransport.Endpoint.SEARCH, request)) {
+            if (!response.isSuccessful()) return candidates;
 
-            if (!root.has("query")) return null;
-
-            JsonObject queryObj = root.getAsJsonObject("query");
-            JsonArray results = queryObj.getAsJsonArray("search");
-
-            return results.size() > 0 ?
-                    results.get(0).getAsJsonObject().get("title").getAsString() : null;
+            // Lettura in streaming: solo titolo, indice, estratto, miniatura e categorie
+            candidates = WikiJsonReader.readSearchCandidates(response.body().charStream(), lang);
         }
+
+        // Le pagine del generator non sono ordinate: usiamo l'indice di rilevanza
+        candidates.sort(Comparator.comparingInt(WikiPage::getIndex));
+        return candidates;
     }
 
-    // Metodo per /cerca - Informazioni generali
-    private SearchResult fetchGeneralInfo(String title) throws IOException {
-        String summaryUrl = String.format(
-                "https://it.wikipedia.org/api/rest_v1/page/summary/%s",
-                URLEncoder.encode(title.replace(" ", "_"), StandardCharsets.UTF_8)
-        );
+    // Normalizza la query per usarla come chiave (spazi e maiuscole)
+    private String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 
-        Request request = new Request.Builder()
-                .url(summaryUrl)
-                .header("User-Agent", userAgent)
-                .build();
+    // Legge un oggetto dalla cache
+    private <T> T getCached(String cacheKey, Class<T> type) {
+        String cached = cache.get(cacheKey);
+        if (cached == null) return null;
+        try {
+            return gson.fromJson(cached, type);
+        } catch (Exception e) {
+            System.err.println("Errore lettura cache per " + cacheKey + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                return SearchResult.error("🚗 **" + title + "**\n\n📋 Dati non disponibili.");
+    // Se Wikipedia non è disponibile (throttling, circuito aperto) serve il dato scaduto, se presente
+    private <T> T loadOrStale(String cacheKey, Class<T> type, SingleFlight.Loader<T> loader) throws IOException {
+        try {
+            return loadWithinDeadline(loader);
+        } catch (UpstreamUnavailableException e) {
+            String stale = cache.getStale(cacheKey);
+            if (stale == null) throw e;
+            if (e instanceof DeadlineExceededException) {
+                staleOnDeadline.incrementAndGet();
             }
+            System.out.println("ℹ Wikipedia non disponibile, uso dati in cache per " + cacheKey);
+            return gson.fromJson(stale, type);
+        }
+    }
+
+    // Errori di lettura dopo la scadenza (es. corpo della risposta interrotto) diventano DeadlineExceededException
+    private <T> T loadWithinDeadline(SingleFlight.Loader<T> loader) throws IOException {
+        try {
+            return loader.load();
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (IOException e) {
+            throwIfDeadlineExpired(e);
+            throw e;
+        }
+    }
 
-            String body = response.body().string();
-            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+    // Salva un SearchResult in cache (solo se valido e completo)
+    private void cacheResult(String cacheKey, SearchResult result) {
+        if (result != null && !result.hasError() && !result.isDegraded()) {
+            cache.put(cacheKey, gson.toJson(result));
+        }
+    }
 
-            // Costruisci risposta per /cerca
-            StringBuilder caption = new StringBuilder("🔍 **" + title + "**\n\n");
+    // Metodo per /cerca - Informazioni generali (con cache)
+    private SearchResult fetchGeneralInfo(WikiPage page) throws IOException {
+        String cacheKey = "general:" + page.getLang() + ":" + page.getTitle();
+        SearchResult cached = getCached(cacheKey, SearchResult.class);
+        if (cached != null) {
+            return cached;
+        }
 
-            if (json.has("extract")) {
-                String extract = json.get("extract").getAsString();
-                caption.append("📖 **Informazioni generali:**\n");
-                caption.append(extract.length() > 350 ? extract.substring(0, 350) + "..." : extract);
+        return singleFlight.execute(cacheKey, () -> loadOrStale(cacheKey, SearchResult.class, () -> {
+            SearchResult result = loadGeneralInfo(page);
+            cacheResult(cacheKey, result);
+            return result;
+        }));
+    }
 
-                // Aggiungi link per dettagli tecnici
-                caption.append("\n\n📊 Per le specifiche tecniche usa: /dettagli ").append(title);
+    private SearchResult loadGeneralInfo(WikiPage page) throws IOException {
+        String title = page.getTitle();
+        String extract = page.getExtract();
+        String imageUrl = page.getImageUrl();
+        boolean degraded = false;
+
+        // Estratto e immagine arrivano già dalla ricerca; il summary serve solo se mancano
+        if (!page.hasExtract() || !page.hasImage()) {
+            WikiJsonReader.Summary summary = awaitWithinDeadline(async(() -> fetchSummary(title, page.getLang())));
+            if (summary == null) {
+                // Tempo finito: si risponde con i dati della ricerca, se ci sono
+                if (!page.hasExtract()) throw new DeadlineExceededException("Tempo esaurito per il summary di " + title);
+                degraded = true;
             } else {
-                caption.append("📋 Nessuna informazione disponibile.");
+                if (!page.hasExtract()) extract = summary.extract();
+                if (!page.hasImage()) imageUrl = summary.imageUrl();
             }
+        }
 
-            // Estrai immagine
-            String imageUrl = extractImageUrl(json);
+        // Costruisci risposta per /cerca
+        StringBuilder caption = new StringBuilder("🔍 **" + title + "**\n\n");
 
-            return imageUrl != null ?
-                    SearchResult.successWithImage(imageUrl, caption.toString()) :
-                    SearchResult.success(caption.toString());
+        if (extract != null && !extract.isEmpty()) {
+            caption.append("📖 **Informazioni generali:**\n");
+            caption.append(extract.length() > 350 ? extract.substring(0, 350) + "..." : extract);
+
+            // Aggiungi link per dettagli tecnici
+            caption.append("\n\n📊 Per le specifiche tecniche usa: /dettagli ").append(title);
+        } else {
+            caption.append("📋 Nessuna informazione disponibile.");
         }
+
+        SearchResult result = imageUrl != null ?
+                SearchResult.successWithImage(imageUrl, caption.toString()) :
+                SearchResult.success(caption.toString());
+        result.forPage(title, page.getLang(), null);
+        return degraded ? degraded(result) : result;
     }
 
-    // Metodo per /dettagli - Scheda tecnica CON INFOBOX
-    private SearchResult fetchTechnicalDetails(String title) throws IOException {
-        // PRIMA: Ottieni l'immagine dal summary
-        String imageUrl = fetchImageFromSummary(title);
+    private SearchResult degraded(SearchResult result) {
+        degradedResults.incrementAndGet();
+        return result.asDegraded();
+    }
 
-        // SECONDA: Ottieni i dati della infobox
-        Map<String, String> infoboxData = fetchInfoboxData(title);
+    // Metodo per /dettagli - Scheda tecnica CON INFOBOX (con cache)
+    private SearchResult fetchTechnicalDetails(WikiPage page, Consumer<SearchResult> onPreview) throws IOException {
+        String cacheKey = "details:" + page.getLang() + ":" + page.getTitle();
+        SearchResult cached = getCached(cacheKey, SearchResult.class);
+        if (cached != null) {
+            return cached;
+        }
 
-        // TERZA: Se non troviamo infobox, prova a cercare in inglese
-        if (infoboxData.isEmpty()) {
-            String enTitle = searchInLanguage(title, "en");
-            if (enTitle != null && !enTitle.equals(title)) {
-                infoboxData = fetchInfoboxDataFromLang(enTitle, "en");
+        if (onPreview != null && page.hasExtract()) {
+            try {
+                onPreview.accept(previewOf(page));
+            } catch (Exception e) {
+                System.err.println("Errore invio anteprima: " + e.getMessage());
             }
         }
 
+        return singleFlight.execute(cacheKey, () -> loadOrStale(cacheKey, SearchResult.class, () -> {
+            SearchResult result = loadTechnicalDetails(page);
+            cacheResult(cacheKey, result);
+            return result;
+        }));
+    }
+
+    // Anteprima mostrata mentre si attende la infobox
+    private SearchResult previewOf(WikiPage page) {
+        String extract = page.getExtract();
+        String caption = "🚗 " + page.getTitle().toUpperCase() + "\n\n" +
+                (extract.length() > 400 ? extract.substring(0, 400) + "..." : extract) +
+                "\n\n⏳ Recupero scheda tecnica...";
+
+        return page.hasImage() ?
+                SearchResult.successWithImage(page.getImageUrl(), caption) :
+                SearchResult.success(caption);
+    }
+
+    private SearchResult loadTechnicalDetails(WikiPage page) throws IOException {
+        String title = page.getTitle();
+        String lang = page.getLang();
+
+        // PRIMA: Summary (immagine + testo), già presente nel risultato della ricerca;
+        // se manca lo scarichiamo in parallelo con la infobox
+        CompletableFuture<WikiJsonReader.Summary> summaryFuture = page.hasExtract() && page.hasImage() ?
+                CompletableFuture.completedFuture(new WikiJsonReader.Summary(page.getExtract(), page.getImageUrl())) :
+                async(() -> fetchSummary(title, lang));
+
+        // SECONDA: Ottieni i dati della infobox
+        // TERZA: Se non troviamo infobox in italiano, prova a cercare in inglese
+        CompletableFuture<Map<String, String>> infoboxFuture = async(() -> lang.equals("it") ?
+                hedge(
+                        () -> fetchInfoboxDataFromLang(title, "it"),
+                        () -> {
+                            List<WikiPage> enCandidates = searchCandidates(title, "en");
+                            String enTitle = enCandidates.isEmpty() ? null : enCandidates.get(0).getTitle();
+                            if (enTitle != null && !enTitle.equals(title)) {
+                                return fetchInfoboxDataFromLang(enTitle, "en");
+                            }
+                            return new LinkedHashMap<>();
+                        },
+                        data -> !data.isEmpty()) :
+                fetchInfoboxDataFromLang(title, lang));
+
+        // Se il tempo della richiesta finisce si risponde con quello che è arrivato
+        Map<String, String> infoboxData = awaitWithinDeadline(infoboxFuture);
+        WikiJsonReader.Summary summaryData = awaitWithinDeadline(summaryFuture);
+        boolean infoboxLate = infoboxData == null;
+        if (infoboxLate) {
+            infoboxData = new LinkedHashMap<>();
+        }
+        boolean summaryLate = summaryData == null;
+        if (summaryLate) {
+            summaryData = new WikiJsonReader.Summary(page.getExtract(), page.getImageUrl());
+        }
+        boolean degraded = infoboxLate || summaryLate;
+        if (infoboxLate && !page.hasExtract() && (summaryData.extract() == null || summaryData.extract().isEmpty())) {
+            throw new DeadlineExceededException("Tempo esaurito per la scheda tecnica di " + title);
+        }
+        String imageUrl = summaryData.imageUrl() != null ? summaryData.imageUrl() : page.getImageUrl();
+        // Nel catalogo va la infobox completa (la didascalia ne consuma i campi)
+        Database.Car car = saveToCatalog(title, lang, summaryData.extract(), imageUrl, infoboxLate ? null : infoboxData);
+
         // Costruisci scheda tecnica (SENZA Markdown per evitare errori di parsing)
         StringBuilder caption = new StringBuilder("🚗 " + title.toUpperCase() + "\n\n");
         caption.append("⚙️ SCHEDA TECNICA\n\n");
@@ -353,27 +698,31 @@ public class CarApiService {
             }
         } else {
             // Fallback: usa il summary come prima
-            String summary = fetchSummaryText(title);
+            String summary = summaryData.extract();
             if (summary != null && !summary.isEmpty()) {
                 caption.append("📋 **Informazioni:**\n");
                 caption.append(summary.length() > 400 ? summary.substring(0, 400) + "..." : summary);
-                caption.append("\n\nℹ️ *Infobox non disponibile per questo modello*");
+                caption.append(infoboxLate ?
+                        "\n\n⏱️ Scheda tecnica non arrivata in tempo: riprova tra poco per i dati completi." :
+                        "\n\nℹ️ *Infobox non disponibile per questo modello*");
             } else {
                 caption.append("❌ Nessuna informazione tecnica disponibile.\n");
                 caption.append("ℹ️ *Prova con un nome più specifico del modello*");
             }
         }
 
-        return imageUrl != null ?
+        SearchResult result = imageUrl != null ?
                 SearchResult.successWithImage(imageUrl, caption.toString()) :
                 SearchResult.success(caption.toString());
+        result.forPage(title, lang, car == null ? null : car.carId());
+        return degraded ? degraded(result) : result;
     }
 
-    // Fetch immagine dal summary API
-    private String fetchImageFromSummary(String title) throws IOException {
+    // Fetch summary (testo + immagine) con una sola chiamata
+    private WikiJsonReader.Summary fetchSummary(String title, String lang) throws IOException {
         String summaryUrl = String.format(
-                "https://it.wikipedia.org/api/rest_v1/page/summary/%s",
-                URLEncoder.encode(title.replace(" ", "_"), StandardCharsets.UTF_8)
+                "https://%s.wikipedia.org/api/rest_v1/page/summary/%s",
+                lang, URLEncoder.encode(title.replace(" ", "_"), StandardCharsets.UTF_8)
         );
 
         Request request = new Request.Builder()
@@ -381,24 +730,30 @@ public class CarApiService {
                 .header("User-Agent", userAgent)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) return null;
+        try (Response response = execute(HttpTransport.Endpoint.SUMMARY, request)) {
+            if (!response.isSuccessful()) return WikiJsonReader.Summary.EMPTY;
 
-            String body = response.body().string();
-            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-            return extractImageUrl(json);
+            return WikiJsonReader.readSummary(response.body().charStream());
+        } catch (UpstreamUnavailableException e) {
+            // Non va confuso con "summary assente": il risultato non deve finire in cache
+            throw e;
         } catch (Exception e) {
-            return null;
+            throwIfDeadlineExpired(e);
+            throwIfCancelled(e);
+            System.err.println("Errore fetch summary: " + e.getMessage());
+            return WikiJsonReader.Summary.EMPTY;
         }
     }
 
-    // Fetch dati dalla infobox usando parse API
-    private Map<String, String> fetchInfoboxData(String title) throws IOException {
-        return fetchInfoboxDataFromLang(title, "it");
+    // Fetch dati dalla infobox con specifica lingua (condiviso tra richieste concorrenti)
+    private Map<String, String> fetchInfoboxDataFromLang(String title, String lang) throws IOException {
+        Map<String, String> shared = singleFlight.execute("infobox:" + lang + ":" + title,
+                () -> loadInfoboxData(title, lang));
+        // Copia: il chiamante modifica la mappa
+        return new LinkedHashMap<>(shared);
     }
 
-    // Fetch dati dalla infobox con specifica lingua
-    private Map<String, String> fetchInfoboxDataFromLang(String title, String lang) throws IOException {
+    private Map<String, String> loadInfoboxData(String title, String lang) throws IOException {
         Map<String, String> data = new LinkedHashMap<>();
 
         // Usa l'API parse per ottenere il wikitext
@@ -412,95 +767,35 @@ public class CarApiService {
                 .header("User-Agent", userAgent)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = execute(HttpTransport.Endpoint.PARSE, request)) {
             if (!response.isSuccessful()) return data;
 
-            String body = response.body().string();
-            JsonObject root = JsonParser.parseString(body).getAsJsonObject();
-
-            if (!root.has("parse")) return data;
-
-            JsonObject parseObj = root.getAsJsonObject("parse");
-            if (!parseObj.has("wikitext")) return data;
-
-            String wikitext = parseObj.getAsJsonObject("wikitext").get("*").getAsString();
+            // Lettura in streaming: estraiamo solo parse.wikitext.*
+            String wikitext = WikiJsonReader.readWikitext(response.body().charStream());
+            if (wikitext == null) return data;
 
             // Estrai dati dalla infobox
             data = parseInfobox(wikitext);
 
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
+            throwIfDeadlineExpired(e);
+            throwIfCancelled(e);
             System.err.println("Errore parsing infobox: " + e.getMessage());
         }
 
         return data;
     }
 
-    // Fetch summary text
-    private String fetchSummaryText(String title) throws IOException {
-        String summaryUrl = String.format(
-                "https://it.wikipedia.org/api/rest_v1/page/summary/%s",
-                URLEncoder.encode(title.replace(" ", "_"), StandardCharsets.UTF_8)
-        );
-
-        Request request = new Request.Builder()
-                .url(summaryUrl)
-                .header("User-Agent", userAgent)
-                .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) return null;
-
-            String body = response.body().string();
-            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-
-            if (json.has("extract")) {
-                return json.get("extract").getAsString();
-            }
-        } catch (Exception e) {
-            System.err.println("Errore fetch summary: " + e.getMessage());
-        }
-
-        return null;
-    }
-
-    // Parse della tabella caratteristiche tecniche dal wikitext
+    // Parse della tabella caratteristiche tecniche dal wikitext:
+    // {{Auto-caratteristiche}} se presente, altrimenti {{Auto}} (fallback)
     private Map<String, String> parseInfobox(String wikitext) {
         Map<String, String> data = new LinkedHashMap<>();
 
         try {
-            // Cerca prima il template {{Auto-caratteristiche}} che contiene i dati tecnici dettagliati
-            Pattern techPattern = Pattern.compile(
-                    "\\{\\{Auto-caratteristiche\\s*\\n(.*?)\\n\\}\\}",
-                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-            );
-
-            Matcher techMatcher = techPattern.matcher(wikitext);
-
-            if (techMatcher.find()) {
-                String techContent = techMatcher.group(1);
-                System.out.println("Template Auto-caratteristiche trovato, lunghezza: " + techContent.length());
-                data = parseTechSpecs(techContent);
-            }
-
-            // Se non troviamo Auto-caratteristiche, prova con l'infobox base come fallback
-            if (data.isEmpty()) {
-                System.out.println("Auto-caratteristiche non trovato, provo con template Auto...");
-                Pattern autoPattern = Pattern.compile(
-                        "\\{\\{Auto\\s*\\n(.*?)\\n\\}\\}",
-                        Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-                );
-
-                Matcher autoMatcher = autoPattern.matcher(wikitext);
-
-                if (autoMatcher.find()) {
-                    String autoContent = autoMatcher.group(1);
-                    System.out.println("Template Auto trovato, lunghezza: " + autoContent.length());
-                    data = parseBasicTemplate(autoContent);
-                }
-            }
-
+            data = WikitextParser.parseCarInfobox(wikitext);
             System.out.println("Campi estratti totali: " + data.size());
-
         } catch (Exception e) {
             System.err.println("Errore nel parsing: " + e.getMessage());
             e.printStackTrace();
@@ -509,129 +804,8 @@ public class CarApiService {
         return data;
     }
 
-    // Parse del template Auto-caratteristiche (dati tecnici dettagliati)
-    private Map<String, String> parseTechSpecs(String content) {
-        Map<String, String> data = new LinkedHashMap<>();
-
-        // Pattern per catturare i campi del template
-        Pattern fieldPattern = Pattern.compile(
-                "\\|\\s*([^=\\|]+?)\\s*=\\s*([^\\n\\|]*)",
-                Pattern.MULTILINE
-        );
-
-        Matcher fieldMatcher = fieldPattern.matcher(content);
-
-        while (fieldMatcher.find()) {
-            String key = fieldMatcher.group(1).trim();
-            String value = fieldMatcher.group(2).trim();
-
-            // Pulisci il valore
-            value = cleanWikiText(value);
-
-            // Ignora campi vuoti e commenti
-            if (key.isEmpty() || value.isEmpty() ||
-                    value.equals("-") || value.equals("–") ||
-                    value.length() < 1 || value.startsWith("<!--")) {
-                continue;
-            }
-
-            // Normalizza la chiave
-            key = key.toLowerCase()
-                    .replace("_", " ")
-                    .replaceAll("\\s+", " ")
-                    .trim();
-
-            // Tronca valori troppo lunghi
-            if (value.length() > 150) {
-                value = value.substring(0, 147) + "...";
-            }
-
-            data.put(key, value);
-        }
-
-        return data;
-    }
-
-    // Parse del template Auto base (fallback)
-    private Map<String, String> parseBasicTemplate(String content) {
-        Map<String, String> data = new LinkedHashMap<>();
-
-        Pattern fieldPattern = Pattern.compile(
-                "\\|\\s*([^=\\|]+?)\\s*=\\s*([^\\n\\|]*)",
-                Pattern.MULTILINE
-        );
-
-        Matcher fieldMatcher = fieldPattern.matcher(content);
-
-        while (fieldMatcher.find()) {
-            String key = fieldMatcher.group(1).trim();
-            String value = fieldMatcher.group(2).trim();
-
-            value = cleanWikiText(value);
-
-            if (key.isEmpty() || value.isEmpty() ||
-                    value.equals("-") || value.equals("–") ||
-                    value.length() < 2 || value.startsWith("<!--")) {
-                continue;
-            }
-
-            key = key.toLowerCase()
-                    .replace("_", " ")
-                    .replaceAll("\\s+", " ")
-                    .trim();
-
-            if (value.length() > 100) {
-                value = value.substring(0, 97) + "...";
-            }
-
-            data.put(key, value);
-        }
-
-        return data;
-    }
-
-    // Pulisce il wikitext da markup wiki
-    private String cleanWikiText(String text) {
-        if (text == null || text.isEmpty()) return "";
-
-        // Rimuovi commenti HTML
-        text = text.replaceAll("<!--.*?-->", "");
-
-        // Rimuovi tag ref
-        text = text.replaceAll("<ref[^>]*>.*?</ref>", "");
-        text = text.replaceAll("<ref[^>]*/>", "");
-        text = text.replaceAll("<ref[^>]*>", "");
-        text = text.replaceAll("</ref>", "");
-
-        // Rimuovi template {{cita...}}
-        text = text.replaceAll("\\{\\{[Cc]ita[^}]*\\}\\}", "");
-
-        // Rimuovi altri template comuni
-        text = text.replaceAll("\\{\\{[^}]+\\}\\}", "");
-
-        // Rimuovi nowiki
-        text = text.replaceAll("</?nowiki/?>", "");
-
-        // Rimuovi link interni ma mantieni il testo visualizzato
-        // [[testo]] -> testo
-        // [[Link|testo]] -> testo
-        text = text.replaceAll("\\[\\[(?:[^\\|\\]]+\\|)?([^\\]]+)\\]\\]", "$1");
-
-        // Rimuovi link esterni
-        text = text.replaceAll("\\[http[^\\]]+\\]", "");
-
-        // Rimuovi markup grassetto/corsivo
-        text = text.replaceAll("'{2,}", "");
-
-        // Rimuovi multipli spazi e newline
-        text = text.replaceAll("\\s+", " ");
-        text = text.replaceAll("\\n+", " ");
-
-        return text.trim();
-    }
-
-    // Formatta il nome del campo in modo leggibile
-    private String formatFieldName(String field) {
+    // Nome leggibile di un campo della infobox (usato anche per i preferiti)
+    static String formatFieldName(String field) {
         if (field == null || field.isEmpty()) return field;
 
         // Mappa solo dei campi che ci interessano
@@ -654,23 +828,8 @@ public class CarApiService {
     }
 
     // Capitalizza prima lettera
-    private String capitalizeFirst(String text) {
+    private static String capitalizeFirst(String text) {
         if (text == null || text.isEmpty()) return text;
         return text.substring(0, 1).toUpperCase() + text.substring(1);
     }
-
-    // Estrai URL immagine
-    private String extractImageUrl(JsonObject json) {
-        try {
-            if (json.has("thumbnail") && json.getAsJsonObject("thumbnail").has("source")) {
-                return json.getAsJsonObject("thumbnail").get("source").getAsString();
-            }
-            if (json.has("originalimage") && json.getAsJsonObject("originalimage").has("source")) {
-                return json.getAsJsonObject("originalimage").get("source").getAsString();
-            }
-        } catch (Exception e) {
-            System.err.println("Errore estrazione immagine: " + e.getMessage());
-        }
-        return null;
-    }
 }
\ No newline at end of file
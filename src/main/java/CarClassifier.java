@@ -0,0 +1,102 @@
+import java.util.List;
+
+// Classificatore "è un'automobile?" basato su categorie Wikipedia e titolo.
+// Gli automi delle parole chiave vengono costruiti una sola volta (sovrascrivibili da config.properties)
+public class CarClassifier {
+
+    // Parole chiave che identificano automobili nelle categorie Wikipedia
+    private final KeywordMatcher carKeywords = KeywordMatcher.fromConfig("CAR_CATEGORY_KEYWORDS",
+            "automobil", "vettur", "auto", "vehicle", "car", "cars",
+            "ferrari", "lamborghini", "porsche", "bmw", "mercedes",
+            "fiat", "alfa romeo", "maserati", "audi", "volkswagen",
+            "toyota", "honda", "nissan", "mazda", "ford",
+            "chevrolet", "dodge", "jeep", "tesla", "bugatti",
+            "mclaren", "aston martin", "bentley", "rolls-royce",
+            "sport", "supercar", "gt", "berlinetta", "coupé",
+            "sedan", "suv", "crossover", "roadster", "spider",
+            "cabriolet", "hatchback", "station wagon");
+
+    // Categorie chiaramente NON automobilistiche
+    private final KeywordMatcher excludeKeywords = KeywordMatcher.fromConfig("CAR_EXCLUDE_KEYWORDS",
+            "nati nel", "morti nel", "nati a", "morti a",
+            "attori", "cantanti", "musicisti", "politici",
+            "scrittori", "registi", "calciatori",
+            "film del", "serie televisive", "album del",
+            "singoli del", "brani musicali");
+
+    // Marche automobilistiche comuni
+    private final KeywordMatcher carBrands = KeywordMatcher.fromConfig("CAR_BRANDS",
+            "ferrari", "lamborghini", "porsche", "bmw", "mercedes", "audi",
+            "volkswagen", "vw", "fiat", "alfa romeo", "lancia", "maserati",
+            "toyota", "honda", "nissan", "mazda", "subaru", "mitsubishi",
+            "ford", "chevrolet", "dodge", "chrysler", "jeep", "gmc",
+            "tesla", "bugatti", "mclaren", "aston martin", "bentley",
+            "rolls-royce", "jaguar", "land rover", "volvo", "saab",
+            "peugeot", "renault", "citroën", "ds", "opel", "seat",
+            "skoda", "dacia", "hyundai", "kia", "lexus", "infiniti",
+            "acura", "cadillac", "lincoln", "buick", "pagani", "koenigsegg");
+
+    // Termini auto generici nel titolo, validi solo insieme a un termine di contesto
+    private final KeywordMatcher carTerms = KeywordMatcher.fromConfig("CAR_TITLE_TERMS",
+            "gt", "turbo", "sport", "racing", "concept");
+    private final KeywordMatcher carContext = new KeywordMatcher(List.of("auto", "car", "vettura"));
+
+    public boolean isCarRelated(WikiPage page, String originalQuery) {
+        String title = page.getTitle();
+
+        if (page.getCategories().isEmpty()) {
+            // Se non ha categorie, verifica almeno il titolo
+            return isCarKeywordInTitle(title, originalQuery);
+        }
+
+        String allCategories = String.join("|", page.getCategories());
+        System.out.println("Categorie trovate per " + title + ": " + allCategories);
+
+        // Una sola scansione per le parole chiave auto e una per le esclusioni
+        List<KeywordMatcher.Match> carHits = wordMatches(carKeywords, allCategories);
+
+        // Se ha categorie auto, è valido (anche se ha biografia del designer)
+        if (!carHits.isEmpty()) {
+            System.out.println("✓ Match trovato per keyword auto: " + carHits.get(0).keyword());
+            return true;
+        }
+
+        // Se NON ha categorie auto, verifica se è chiaramente NON-auto
+        List<KeywordMatcher.Match> excludeHits = wordMatches(excludeKeywords, allCategories);
+        if (!excludeHits.isEmpty()) {
+            System.out.println("✗ Escluso per keyword: " + excludeHits.get(0).keyword());
+            return false;
+        }
+
+        // Se non troviamo categorie auto chiare, verifica il titolo
+        return isCarKeywordInTitle(title, originalQuery);
+    }
+
+    // Verifica se il titolo (o la query) contiene parole chiave auto
+    public boolean isCarKeywordInTitle(String title, String originalQuery) {
+        // Le marche devono essere parole intere ("ds" non deve corrispondere a "records")
+        if (hasWholeWord(carBrands, title) || hasWholeWord(carBrands, originalQuery)) {
+            return true;
+        }
+
+        // Termini auto generici accompagnati da un termine di contesto
+        return hasWholeWord(carTerms, title) && !wordMatches(carContext, title).isEmpty();
+    }
+
+    // Corrispondenze a inizio parola; le parole chiave corte (<= 3 caratteri) devono essere parole intere,
+    // anche al plurale ("SUVs") o seguite da un trattino ("SUV-Coupé")
+    private List<KeywordMatcher.Match> wordMatches(KeywordMatcher matcher, String text) {
+        return matcher.findAll(text).stream()
+                .filter(m -> m.keyword().length() <= 3 ? m.isWholeWordOrPlural(text) : m.startsWord(text))
+                .toList();
+    }
+
+    private boolean hasWholeWord(KeywordMatcher matcher, String text) {
+        for (KeywordMatcher.Match match : matcher.findAll(text)) {
+            if (match.isWholeWord(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
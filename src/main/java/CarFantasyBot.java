@@ -1,44 +1,209 @@
 import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
-import org.telegram.telegrambots.longpolling.util.LongPollingSingleThreadUpdateConsumer;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.methods.ActionType;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+import org.telegram.telegrambots.meta.api.objects.photo.PhotoSize;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardRow;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 import org.telegram.telegrambots.meta.generics.TelegramClient;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public final class CarFantasyBot implements LongPollingUpdateConsumer {
+    // Un album Telegram contiene al massimo 10 foto
+    private static final int BATCH_MAX_ITEMS = 10;
+    // Dati dei bottoni dei preferiti: id dell'auto nel catalogo
+    private static final String ADD_FAVORITE = "fav_add:";
+    private static final String REMOVE_FAVORITE = "fav_del:";
+    // Bottoni inviati prima del catalogo (nome dell'auto con "_" al posto degli spazi)
+    private static final String LEGACY_ADD_FAVORITE = "add_favorite_";
+    private static final String LEGACY_REMOVE_FAVORITE = "remove_favorite_";
+    // Campi della infobox mostrati nella lista dei preferiti, in ordine di preferenza
+    private static final List<String> FAVORITE_FIELDS = List.of("potenza", "cilindrata", "velocità", "accelerazione");
 
-public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
     private final TelegramClient telegramClient;
     private final CarApiService carApiService;
+    private final UpdateDispatcher dispatcher;
+    private final TelegramSender sender;
+    private final CarTitleIndex titleIndex;
+    private final UserRegistry userRegistry;
+    private final FavoritesCache favoritesCache = new FavoritesCache();
+    private final Gson gson = new Gson();
+
+    // /dettagli: tempo fino al primo messaggio visibile e fino al risultato completo
+    private final LatencyStats firstResponseLatency = new LatencyStats();
+    private final LatencyStats completeLatency = new LatencyStats();
+    private final int inlineMaxResults;
+    private final int inlineCacheSeconds;
+    // Tempo massimo per le chiamate a Wikipedia di un singolo update (0 = nessun limite)
+    private final long updateDeadlineMs;
 
     public CarFantasyBot(String botToken) {
         this.telegramClient = new OkHttpTelegramClient(botToken);
-        this.carApiService = new CarApiService();
+
+        // Avvio dei componenti lenti prima del primo utente. Il database ha un solo writer e
+        // Database.getInstance() è sincronizzato: apertura e migrazioni, pulizia della cache e indice
+        // dei titoli vanno in sequenza. In parallelo all'indice si preparano le connessioni a Wikipedia,
+        // che non toccano il database
+        try (ExecutorService warmup = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<CarApiService> api = CompletableFuture.supplyAsync(CarApiService::new, warmup);
+            CompletableFuture<Void> connections = api.thenAcceptAsync(CarApiService::warmUp, warmup);
+            // Suggerimenti inline: indice locale dei titoli già risolti, aggiornato a ogni ricerca
+            CompletableFuture<CarTitleIndex> index = api.thenApplyAsync(ready -> CarTitleIndex.fromDatabase(), warmup);
+
+            this.carApiService = api.join();
+            this.titleIndex = index.join();
+            connections.join();
+        }
+
+        this.dispatcher = new UpdateDispatcher(this::consume);
+        this.sender = new TelegramSender();
+        this.userRegistry = new UserRegistry();
+        this.carApiService.addResolvedTitleListener(titleIndex::recordResolved);
+        this.carApiService.addCatalogListener(favoritesCache::updateCar);
+        this.inlineMaxResults = Config.getInt("INLINE_MAX_RESULTS", 10);
+        this.inlineCacheSeconds = Config.getInt("INLINE_CACHE_SECONDS", 60);
+        this.updateDeadlineMs = Config.getLong("UPDATE_DEADLINE_MS", 8000);
     }
 
+    // Update ricevuti dal polling: elaborati in parallelo, in ordine all'interno di ogni chat
     @Override
+    public void consume(List<Update> updates) {
+        for (Update update : updates) {
+            dispatcher.submit(update);
+        }
+    }
+
+    public UpdateDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public TelegramSender getSender() {
+        return sender;
+    }
+
+    public CarTitleIndex getTitleIndex() {
+        return titleIndex;
+    }
+
+    public UserRegistry getUserRegistry() {
+        return userRegistry;
+    }
+
+    public FavoritesCache getFavoritesCache() {
+        return favoritesCache;
+    }
+
+    // Chiusura ordinata: elabora gli update già ricevuti e gli invii in coda entro timeoutMs,
+    // poi salva utenti e titoli in sospeso e chiude servizio Wikipedia e database
+    public boolean shutdown(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        boolean updatesDrained = dispatcher.shutdown(timeoutMs);
+        long remainingMs = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        boolean sendsDrained = sender.shutdown(remainingMs);
+
+        userRegistry.close();
+        titleIndex.close();
+        carApiService.close();
+        Database.getInstance().close();
+
+        System.out.println(dispatcher);
+        System.out.println(sender);
+        System.out.println(userRegistry);
+        System.out.println(titleIndex);
+        System.out.println(favoritesCache);
+        System.out.println(Database.getInstance());
+        System.out.println(carApiService.getCache());
+        System.out.println(carApiService.getGuard());
+        System.out.println("/dettagli: primo messaggio " + firstResponseLatency + ", risultato completo " + completeLatency);
+        System.out.println("Scadenza update: parziali=" + carApiService.getDegradedResults() +
+                ", cache scaduta=" + carApiService.getStaleOnDeadline() +
+                ", errori=" + carApiService.getDeadlineFailures());
+
+        return updatesDrained && sendsDrained;
+    }
+
+    public LatencyStats getFirstResponseLatency() {
+        return firstResponseLatency;
+    }
+
+    public LatencyStats getCompleteLatency() {
+        return completeLatency;
+    }
+
+    // Elaborazione di un singolo update (eseguita su un virtual thread del dispatcher), entro
+    // UPDATE_DEADLINE_MS: allo scadere le chiamate a Wikipedia vengono annullate e si risponde
+    // con dati parziali o in cache invece di far aspettare l'utente
     public void consume(Update update) {
+        if (updateDeadlineMs <= 0) {
+            process(update);
+            return;
+        }
+
+        try (CallScope scope = CallScope.withDeadline(Deadline.after(updateDeadlineMs))) {
+            scope.run(() -> {
+                process(update);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void process(Update update) {
         // Gestisci callback dei bottoni
         if (update.hasCallbackQuery()) {
             handleCallbackQuery(update);
             return;
         }
 
+        // Gestisci le ricerche inline (@bot ferr...)
+        if (update.hasInlineQuery()) {
+            handleInlineQuery(update);
+            return;
+        }
+
         if (update.hasMessage() && update.getMessage().hasText()) {
             String messageText = update.getMessage().getText();
             long chatId = update.getMessage().getChatId();
 
-            // Salva/aggiorna utente nel database
+            // Salva/aggiorna utente (scrittura differita, solo se cambiato)
             var message = update.getMessage();
             var user = message.getFrom();
             if (user != null) {
-                Database.getInstance().addOrUpdateUser(
+                userRegistry.record(
                         user.getId(),
                         user.getUserName(),
                         user.getFirstName(),
@@ -71,31 +236,34 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
         String lastName = callbackQuery.getFrom().getLastName();
 
         // Salva utente
-        Database.getInstance().addOrUpdateUser(userId, username, firstName, lastName);
+        userRegistry.record(userId, username, firstName, lastName);
 
-        if (callbackData.startsWith("add_favorite_")) {
-            String carName = callbackData.replace("add_favorite_", "").replace("_", " ");
+        if (callbackData.startsWith(ADD_FAVORITE) || callbackData.startsWith(LEGACY_ADD_FAVORITE)) {
+            Database.Car car = carFromCallback(callbackData);
+            if (car == null) {
+                answerCallbackQuery(callbackQuery.getId(), "❌ Auto non trovata, ripeti la ricerca");
+                return;
+            }
 
-            boolean added = Database.getInstance().addFavorite(userId, carName);
+            boolean added = favoritesCache.add(userId, car);
 
             String responseText;
             if (added) {
-                responseText = "⭐ " + carName + " aggiunto ai preferiti!\n\n" +
+                responseText = "⭐ " + car.title() + " aggiunto ai preferiti!\n\n" +
                         "Usa /preferiti per vedere la tua lista.";
             } else {
-                responseText = "ℹ️ " + carName + " è già nei tuoi preferiti!";
+                responseText = "ℹ️ " + car.title() + " è già nei tuoi preferiti!";
             }
 
             // Rispondi al callback
             answerCallbackQuery(callbackQuery.getId(), responseText);
 
-        } else if (callbackData.startsWith("remove_favorite_")) {
-            String carName = callbackData.replace("remove_favorite_", "").replace("_", " ");
-
-            boolean removed = Database.getInstance().removeFavorite(userId, carName);
+        } else if (callbackData.startsWith(REMOVE_FAVORITE) || callbackData.startsWith(LEGACY_REMOVE_FAVORITE)) {
+            Database.Car car = carFromCallback(callbackData);
+            boolean removed = car != null && favoritesCache.remove(userId, car.carId());
 
             String responseText = removed ?
-                    "🗑️ " + carName + " rimosso dai preferiti" :
+                    "🗑️ " + car.title() + " rimosso dai preferiti" :
                     "❌ Errore nella rimozione";
 
             answerCallbackQuery(callbackQuery.getId(), responseText);
@@ -105,9 +273,88 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
         }
     }
 
-    // Mostra i preferiti dell'utente
+    // Auto del catalogo indicata da un bottone: per id, oppure per nome nei bottoni inviati prima del catalogo.
+    // Il nome è quello scritto dall'utente: si cerca solo tra i dati locali (nessuna chiamata a Wikipedia
+    // prima di rispondere al callback); se non è noto l'utente ripete la ricerca
+    private Database.Car carFromCallback(String callbackData) {
+        if (callbackData.startsWith(ADD_FAVORITE) || callbackData.startsWith(REMOVE_FAVORITE)) {
+            try {
+                return Database.getInstance().getCar(Long.parseLong(callbackData.substring(callbackData.indexOf(':') + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String carName = callbackData
+                .replace(LEGACY_ADD_FAVORITE, "")
+                .replace(LEGACY_REMOVE_FAVORITE, "")
+                .replace("_", " ");
+        if (callbackData.startsWith(LEGACY_REMOVE_FAVORITE)) {
+            // Un preferito da rimuovere è sempre nel catalogo
+            return Database.getInstance().findCarByTitle(carName);
+        }
+        return findKnownCar(Database.getInstance(), titleIndex, carName);
+    }
+
+    // Voce del catalogo per un risultato di /dettagli: quella salvata con la scheda, altrimenti
+    // (risultati in cache di versioni precedenti) il titolo risolto o un nome già noto.
+    // 0 = nessuna voce: il messaggio esce senza il bottone dei preferiti
+    private long carIdOf(SearchResult result, String model) {
+        if (result.getCarId() != null) {
+            return result.getCarId();
+        }
+        Database.Car car = result.getTitle() != null ?
+                Database.getInstance().ensureCar(result.getTitle(), result.getLang()) :
+                findKnownCar(Database.getInstance(), titleIndex, model);
+        return car == null ? 0 : car.carId();
+    }
+
+    // Voce del catalogo per un nome scritto dall'utente: una già salvata con quel titolo, oppure quella
+    // del titolo risolto corrispondente nell'indice. Mai una nuova voce con il testo libero
+    static Database.Car findKnownCar(Database database, CarTitleIndex titleIndex, String name) {
+        Database.Car car = database.findCarByTitle(name);
+        if (car != null) {
+            return car;
+        }
+        CarTitleIndex.Entry resolved = titleIndex.find(name);
+        return resolved != null ? database.ensureCar(resolved.getTitle(), resolved.getLang()) : null;
+    }
+
+    // Suggerimenti inline dall'indice locale: nessuna chiamata a Wikipedia per tasto premuto
+    private void handleInlineQuery(Update update) {
+        var inlineQuery = update.getInlineQuery();
+        List<CarTitleIndex.Entry> matches = titleIndex.search(inlineQuery.getQuery(), inlineMaxResults);
+
+        List<InlineQueryResult> results = new ArrayList<>();
+        for (CarTitleIndex.Entry match : matches) {
+            InlineQueryResultArticle.InlineQueryResultArticleBuilder<?, ?> article = InlineQueryResultArticle.builder()
+                    .id(Integer.toHexString((match.getLang() + ":" + match.getTitle()).hashCode()))
+                    .title(match.getTitle())
+                    .description("Tocca per la scheda tecnica")
+                    .inputMessageContent(InputTextMessageContent.builder()
+                            .messageText("/dettagli " + match.getTitle())
+                            .build());
+
+            if (match.getImageUrl() != null) {
+                article.thumbnailUrl(match.getImageUrl());
+            }
+            results.add(article.build());
+        }
+
+        var answer = AnswerInlineQuery.builder()
+                .inlineQueryId(inlineQuery.getId())
+                .results(results)
+                .cacheTime(inlineCacheSeconds)
+                .isPersonal(false)
+                .build();
+
+        sender.enqueuePriority(() -> telegramClient.execute(answer))
+                .exceptionally(e -> logSendError("risposta inline", e));
+    }
+
+    // Mostra i preferiti dell'utente, con i dati del catalogo (nessuna chiamata a Wikipedia)
     private void handleFavorites(long chatId) {
-        List<String> favorites = Database.getInstance().getUserFavorites(chatId);
+        List<Database.Car> favorites = favoritesCache.getFavorites(chatId);
 
         if (favorites.isEmpty()) {
             sendMessage(chatId, "⭐ Non hai ancora preferiti!\n\n" +
@@ -120,13 +367,20 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
         // Crea bottoni per rimuovere
         List<InlineKeyboardRow> keyboard = new ArrayList<>();
 
-        for (String car : favorites) {
-            message.append("🚗 ").append(car).append("\n");
+        for (Database.Car car : favorites) {
+            message.append("🚗 ").append(car.title()).append("\n");
+            // Oltre i limiti di Telegram restano solo i nomi
+            if (message.length() < 3000) {
+                String details = favoriteDetails(car);
+                if (details != null) {
+                    message.append("   ").append(details).append("\n");
+                }
+            }
 
             InlineKeyboardRow row = new InlineKeyboardRow();
             row.add(InlineKeyboardButton.builder()
-                    .text("🗑️ " + car)
-                    .callbackData("remove_favorite_" + car.replace(" ", "_"))
+                    .text("🗑️ " + car.title())
+                    .callbackData(REMOVE_FAVORITE + car.carId())
                     .build());
             keyboard.add(row);
         }
@@ -143,24 +397,20 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
                 .replyMarkup(keyboardMarkup)
                 .build();
 
-        try {
-            telegramClient.execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        sender.enqueue(chatId, () -> telegramClient.execute(sendMessage))
+                .exceptionally(e -> logSendError("preferiti", e));
     }
 
-    // Rispondi a un callback query
+    // Rispondi a un callback query (prioritario: l'utente vede lo spinner finché non arriva)
     private void answerCallbackQuery(String callbackQueryId, String text) {
-        try {
-            telegramClient.execute(org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery.builder()
-                    .callbackQueryId(callbackQueryId)
-                    .text(text)
-                    .showAlert(false)
-                    .build());
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        var answer = org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery.builder()
+                .callbackQueryId(callbackQueryId)
+                .text(text)
+                .showAlert(false)
+                .build();
+
+        sender.enqueuePriority(() -> telegramClient.execute(answer))
+                .exceptionally(e -> logSendError("callback", e));
     }
 
     private void handleSearchWithPhoto(long chatId, String command) {
@@ -170,6 +420,10 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
             return;
         }
         String make = parts[1];
+        if (make.contains(",")) {
+            handleBatch(chatId, make, false);
+            return;
+        }
         SearchResult result = carApiService.searchByMakeWithImage(make);
         sendSearchResult(chatId, result);
     }
@@ -181,8 +435,275 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
             return;
         }
         String model = parts[1];
-        SearchResult result = carApiService.getModelDetailsWithImage(model);
-        sendDetailsWithButton(chatId, result, model);
+        if (model.contains(",")) {
+            handleBatch(chatId, model, true);
+            return;
+        }
+        long startedAt = System.nanoTime();
+
+        // Subito "sta scrivendo..." e un messaggio provvisorio, modificato quando arrivano i dati
+        sendChatAction(chatId);
+        CompletableFuture<Message> placeholder = sender.enqueue(chatId, () -> telegramClient.execute(SendMessage.builder()
+                .chatId(String.valueOf(chatId))
+                .text("🔎 Cerco " + model + "...")
+                .build()));
+        placeholder.thenRun(() -> firstResponseLatency.recordSince(startedAt));
+
+        // L'anteprima (riassunto) arriva prima della infobox: la mostriamo nel messaggio provvisorio
+        AtomicReference<CompletableFuture<Void>> previewEdit = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        SearchResult result = carApiService.getModelDetailsWithImageAsync(model, preview ->
+                previewEdit.set(placeholder.thenCompose(message -> editPlaceholder(message, preview.getCaption(), null))
+                        .exceptionally(e -> logSendError("anteprima", e)))
+        ).join();
+
+        long carId = result.hasError() ? 0 : carIdOf(result, model);
+
+        // Il risultato finale va applicato dopo l'eventuale anteprima; senza messaggio provvisorio si invia normalmente
+        placeholder.exceptionally(e -> null)
+                .thenCombine(previewEdit.get(), (message, ignored) -> message)
+                .thenCompose(message -> message == null ?
+                        sendDetailsWithButton(chatId, result, carId) :
+                        completePlaceholder(chatId, message, result, carId))
+                .whenComplete((ignored, e) -> completeLatency.recordSince(startedAt));
+    }
+
+    // Più modelli separati da virgola (/dettagli a, b, c): ricerche in parallelo e un solo album
+    // con tutte le foto; i preferiti si aggiungono da un messaggio successivo (un album non ha bottoni)
+    private void handleBatch(long chatId, String argument, boolean details) {
+        List<String> queries = Arrays.stream(argument.split(","))
+                .map(String::trim)
+                .filter(query -> !query.isEmpty())
+                .distinct()
+                .limit(BATCH_MAX_ITEMS)
+                .toList();
+
+        // Solo virgole o spazi ("/dettagli ,"): nessun elemento da cercare, si mostra l'uso del comando
+        if (queries.isEmpty()) {
+            sendMessage(chatId, details ?
+                    "❌ Specifica uno o più modelli separati da virgola. Esempio: /dettagli Fiat 500, Lancia Delta" :
+                    "❌ Specifica una o più marche separate da virgola. Esempio: /cerca toyota, fiat", true);
+            return;
+        }
+
+        if (queries.size() == 1) {
+            if (details) {
+                handleDetailsWithPhoto(chatId, "/dettagli " + queries.get(0));
+            } else {
+                handleSearchWithPhoto(chatId, "/cerca " + queries.get(0));
+            }
+            return;
+        }
+
+        sendChatAction(chatId);
+        List<SearchResult> results = details ?
+                carApiService.getModelDetailsBatch(queries) :
+                carApiService.searchByMakeBatch(queries);
+
+        List<String> photoUrls = new ArrayList<>();
+        List<String> photoCaptions = new ArrayList<>();
+        List<String> photoQueries = new ArrayList<>();
+        List<Long> photoCarIds = new ArrayList<>();
+        StringBuilder errors = new StringBuilder();
+        // Un album richiede almeno 2 foto: altrimenti ogni risultato segue l'invio normale
+        boolean album = results.stream().filter(result -> !result.hasError() && result.hasImage()).count() >= 2;
+
+        for (int i = 0; i < results.size(); i++) {
+            SearchResult result = results.get(i);
+            String query = queries.get(i);
+
+            if (result.hasError()) {
+                errors.append(result.getErrorMessage()).append("\n\n");
+            } else if (album && result.hasImage()) {
+                photoUrls.add(result.getImageUrl().trim());
+                photoCaptions.add(result.getCaption());
+                photoQueries.add(result.getTitle() != null ? result.getTitle() : query);
+                photoCarIds.add(details ? carIdOf(result, query) : 0);
+            } else if (details) {
+                sendDetailsWithButton(chatId, result, carIdOf(result, query));
+            } else {
+                sendSearchResult(chatId, result);
+            }
+        }
+
+        if (!photoQueries.isEmpty()) {
+            String parseMode = details ? null : "Markdown";
+            sendMediaGroupCached(chatId, photoUrls, photoCaptions, parseMode)
+                    .exceptionally(e -> {
+                        System.err.println("Errore Telegram inviando album: " + rootCause(e).getMessage());
+                        // Fallback: una foto alla volta
+                        for (int i = 0; i < photoQueries.size(); i++) {
+                            if (details) {
+                                sendPhotoWithButton(chatId, photoUrls.get(i), photoCaptions.get(i), photoCarIds.get(i));
+                            } else {
+                                sendPhoto(chatId, photoUrls.get(i), photoCaptions.get(i), true);
+                            }
+                        }
+                        return null;
+                    });
+
+            if (details) {
+                sendFavoriteButtons(chatId, photoQueries, photoCarIds);
+            }
+        }
+
+        if (errors.length() > 0) {
+            sendMessage(chatId, errors.toString().trim(), false);
+        }
+    }
+
+    // Album di foto (2-10) riusando i file_id già noti; se Telegram ne rifiuta uno si reinvia tutto da URL
+    private CompletableFuture<Void> sendMediaGroupCached(long chatId, List<String> urls, List<String> captions, String parseMode) {
+        List<String> fileIds = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            fileIds.add(Database.getInstance().getPhotoFileId(url));
+        }
+
+        CompletableFuture<List<Message>> sent = sender.enqueue(chatId,
+                () -> telegramClient.execute(mediaGroup(chatId, urls, fileIds, captions, parseMode)));
+
+        if (fileIds.stream().anyMatch(Objects::nonNull)) {
+            sent = sent.exceptionallyCompose(e -> {
+                if (!isBadRequest(e)) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                System.out.println("ℹ file_id non più validi, invio album da URL");
+                for (int i = 0; i < urls.size(); i++) {
+                    if (fileIds.get(i) != null) {
+                        Database.getInstance().removePhotoFileId(urls.get(i));
+                        fileIds.set(i, null);
+                    }
+                }
+                return sender.enqueue(chatId,
+                        () -> telegramClient.execute(mediaGroup(chatId, urls, fileIds, captions, parseMode)));
+            });
+        }
+
+        return sent.thenAccept(messages -> {
+            for (int i = 0; i < messages.size() && i < urls.size(); i++) {
+                String newFileId = largestPhotoFileId(messages.get(i));
+                if (newFileId != null && !newFileId.equals(fileIds.get(i))) {
+                    Database.getInstance().putPhotoFileId(urls.get(i), newFileId);
+                }
+            }
+        });
+    }
+
+    private static SendMediaGroup mediaGroup(long chatId, List<String> urls, List<String> fileIds,
+                                             List<String> captions, String parseMode) {
+        List<InputMediaPhoto> medias = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            String caption = captions.get(i);
+            medias.add(InputMediaPhoto.builder()
+                    .media(fileIds.get(i) != null ? fileIds.get(i) : urls.get(i))
+                    .caption(caption.length() > 1024 ? caption.substring(0, 1020) + "..." : caption)
+                    .parseMode(parseMode)
+                    .build());
+        }
+
+        return SendMediaGroup.builder()
+                .chatId(String.valueOf(chatId))
+                .medias(medias)
+                .build();
+    }
+
+    // Riga di dettaglio di un preferito: i campi principali della infobox, altrimenti l'inizio del riassunto
+    private String favoriteDetails(Database.Car car) {
+        if (car.infoboxJson() != null) {
+            try {
+                Map<String, String> infobox = gson.fromJson(car.infoboxJson(), new TypeToken<Map<String, String>>() {}.getType());
+                List<String> fields = new ArrayList<>();
+                for (String field : FAVORITE_FIELDS) {
+                    if (infobox.containsKey(field) && fields.size() < 2) {
+                        fields.add(CarApiService.formatFieldName(field) + ": " + infobox.get(field));
+                    }
+                }
+                if (!fields.isEmpty()) {
+                    return "⚙️ " + String.join(" · ", fields);
+                }
+            } catch (Exception e) {
+                System.err.println("Errore lettura infobox di " + car.title() + ": " + e.getMessage());
+            }
+        }
+
+        String summary = car.summary();
+        if (summary == null || summary.isBlank()) {
+            return null;
+        }
+        return "📖 " + (summary.length() > 120 ? summary.substring(0, 120) + "..." : summary);
+    }
+
+    // Un bottone "Aggiungi ai preferiti" per ogni modello dell'album
+    private void sendFavoriteButtons(long chatId, List<String> labels, List<Long> carIds) {
+        List<InlineKeyboardRow> keyboard = new ArrayList<>();
+        for (int i = 0; i < labels.size(); i++) {
+            if (carIds.get(i) <= 0) continue;
+            InlineKeyboardRow row = new InlineKeyboardRow();
+            row.add(InlineKeyboardButton.builder()
+                    .text("⭐ " + labels.get(i))
+                    .callbackData(ADD_FAVORITE + carIds.get(i))
+                    .build());
+            keyboard.add(row);
+        }
+        if (keyboard.isEmpty()) return;
+
+        SendMessage message = SendMessage.builder()
+                .chatId(String.valueOf(chatId))
+                .text("⭐ Aggiungi ai preferiti:")
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build();
+
+        sender.enqueue(chatId, () -> telegramClient.execute(message))
+                .exceptionally(e -> logSendError("bottoni preferiti", e));
+    }
+
+    // Sostituisce il messaggio provvisorio con il risultato: il testo si modifica sul posto,
+    // una foto va inviata come nuovo messaggio (un messaggio di testo non può diventare una foto)
+    private CompletableFuture<Void> completePlaceholder(long chatId, Message placeholder, SearchResult result, long carId) {
+        if (result.hasError()) {
+            return editPlaceholder(placeholder, result.getErrorMessage(), null)
+                    .exceptionallyCompose(e -> sendMessage(chatId, result.getErrorMessage(), false));
+        }
+
+        if (result.hasImage()) {
+            return sendPhotoWithButton(chatId, result.getImageUrl(), result.getCaption(), carId)
+                    .thenCompose(sent -> deleteMessage(placeholder));
+        }
+
+        return editPlaceholder(placeholder, result.getCaption(), favoriteKeyboard(carId))
+                .exceptionallyCompose(e -> sendMessageWithButton(chatId, result.getCaption(), carId));
+    }
+
+    private CompletableFuture<Void> editPlaceholder(Message placeholder, String text, InlineKeyboardMarkup keyboard) {
+        EditMessageText edit = EditMessageText.builder()
+                .chatId(String.valueOf(placeholder.getChatId()))
+                .messageId(placeholder.getMessageId())
+                .text(text.length() > 4096 ? text.substring(0, 4092) + "..." : text)
+                .replyMarkup(keyboard)
+                .build();
+
+        return sender.enqueue(placeholder.getChatId(), () -> telegramClient.execute(edit)).thenAccept(edited -> {});
+    }
+
+    private CompletableFuture<Void> deleteMessage(Message message) {
+        DeleteMessage delete = DeleteMessage.builder()
+                .chatId(String.valueOf(message.getChatId()))
+                .messageId(message.getMessageId())
+                .build();
+
+        return sender.enqueuePriority(() -> telegramClient.execute(delete))
+                .thenAccept(deleted -> {})
+                .exceptionally(e -> logSendError("eliminazione messaggio", e));
+    }
+
+    // Azione "sta scrivendo...": non è un messaggio, non consuma il limite della chat
+    private void sendChatAction(long chatId) {
+        SendChatAction action = SendChatAction.builder()
+                .chatId(String.valueOf(chatId))
+                .action(ActionType.TYPING.toString())
+                .build();
+
+        sender.enqueuePriority(() -> telegramClient.execute(action))
+                .exceptionally(e -> logSendError("azione", e));
     }
 
     private void sendSearchResult(long chatId, SearchResult result) {
@@ -198,18 +719,17 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
         }
     }
 
-    private void sendDetailsWithButton(long chatId, SearchResult result, String model) {
+    private CompletableFuture<Void> sendDetailsWithButton(long chatId, SearchResult result, long carId) {
         if (result.hasError()) {
-            sendMessage(chatId, result.getErrorMessage(), false);
-            return;
+            return sendMessage(chatId, result.getErrorMessage(), false);
         }
 
         // Se c'è un'immagine, invia con bottone
         if (result.getImageUrl() != null && !result.getImageUrl().isEmpty()) {
-            sendPhotoWithButton(chatId, result.getImageUrl(), result.getCaption(), model);
+            return sendPhotoWithButton(chatId, result.getImageUrl(), result.getCaption(), carId);
         } else {
             // Se non c'è immagine, invia solo messaggio con bottone
-            sendMessageWithButton(chatId, result.getCaption(), model);
+            return sendMessageWithButton(chatId, result.getCaption(), carId);
         }
     }
 
@@ -231,6 +751,7 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
                     return "📖 Comandi disponibili:\n\n" +
                             "/cerca <marca> - Informazioni generali con foto (es: /cerca toyota)\n" +
                             "/dettagli <modello> - Specifiche tecniche con foto (es: /dettagli Ferrari F40)\n" +
+                            "   Più modelli separati da virgola per confrontarli (es: /dettagli Ferrari F40, Porsche 959)\n" +
                             "/preferiti - Mostra la tua lista di auto preferite\n" +
                             "/help - Mostra questo messaggio";
 
@@ -255,8 +776,8 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
         }
     }
 
-    private void sendMessage(long chatId, String text, boolean useMarkdown) {
-        SendMessage.SendMessageBuilder builder = SendMessage
+    private CompletableFuture<Void> sendMessage(long chatId, String text, boolean useMarkdown) {
+        SendMessage.SendMessageBuilder<?, ?> builder = SendMessage
                 .builder()
                 .chatId(String.valueOf(chatId))
                 .text(text);
@@ -267,42 +788,39 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
 
         SendMessage message = builder.build();
 
-        try {
-            telegramClient.execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        return sender.enqueue(chatId, () -> telegramClient.execute(message))
+                .thenAccept(sent -> {})
+                .exceptionally(e -> logSendError("messaggio", e));
     }
 
-    private void sendMessageWithButton(long chatId, String text, String model) {
-        // Crea il bottone inline usando InlineKeyboardRow
-        List<InlineKeyboardRow> keyboard = new ArrayList<>();
-        InlineKeyboardRow row = new InlineKeyboardRow();
-
-        row.add(InlineKeyboardButton.builder()
-                .text("⭐ Aggiungi ai preferiti")
-                .callbackData("add_favorite_" + model.replace(" ", "_"))
-                .build());
-
-        keyboard.add(row);
-
-        InlineKeyboardMarkup keyboardMarkup = InlineKeyboardMarkup.builder()
-                .keyboard(keyboard)
-                .build();
-
+    private CompletableFuture<Void> sendMessageWithButton(long chatId, String text, long carId) {
         SendMessage message = SendMessage
                 .builder()
                 .chatId(String.valueOf(chatId))
                 .text(text)
                 // NON usiamo parseMode per i dettagli tecnici
-                .replyMarkup(keyboardMarkup)
+                .replyMarkup(favoriteKeyboard(carId))
                 .build();
 
-        try {
-            telegramClient.execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        return sender.enqueue(chatId, () -> telegramClient.execute(message))
+                .thenAccept(sent -> {})
+                .exceptionally(e -> logSendError("messaggio con bottone", e));
+    }
+
+    // Bottone inline "Aggiungi ai preferiti"
+    // (nessun bottone se l'auto non è nel catalogo)
+    private static InlineKeyboardMarkup favoriteKeyboard(long carId) {
+        if (carId <= 0) return null;
+
+        InlineKeyboardRow row = new InlineKeyboardRow();
+        row.add(InlineKeyboardButton.builder()
+                .text("⭐ Aggiungi ai preferiti")
+                .callbackData(ADD_FAVORITE + carId)
+                .build());
+
+        return InlineKeyboardMarkup.builder()
+                .keyboard(List.of(row))
+                .build();
     }
 
     private void sendPhoto(long chatId, String photoUrl, String caption, boolean useMarkdown) {
@@ -312,76 +830,115 @@ public class CarFantasyBot implements LongPollingSingleThreadUpdateConsumer {
                 return;
             }
 
-            InputFile photo = new InputFile(photoUrl.trim());
             String safeCaption = caption.length() > 1024 ?
                     caption.substring(0, 1020) + "..." : caption;
 
-            SendPhoto.SendPhotoBuilder builder = SendPhoto
+            SendPhoto.SendPhotoBuilder<?, ?> builder = SendPhoto
                     .builder()
                     .chatId(String.valueOf(chatId))
-                    .photo(photo)
                     .caption(safeCaption);
 
             if (useMarkdown) {
                 builder.parseMode("Markdown");
             }
 
-            SendPhoto sendPhoto = builder.build();
-
-            telegramClient.execute(sendPhoto);
-        } catch (TelegramApiException e) {
-            System.err.println("Errore Telegram: " + e.getMessage());
-            // Fallback: invia solo il testo
-            sendMessage(chatId, caption + "\n\n⚠️ Impossibile caricare l'immagine", useMarkdown);
+            sendPhotoCached(chatId, photoUrl, photo -> builder.photo(photo).build())
+                    .exceptionally(e -> {
+                        System.err.println("Errore Telegram: " + rootCause(e).getMessage());
+                        // Fallback: invia solo il testo
+                        sendMessage(chatId, caption + "\n\n⚠️ Impossibile caricare l'immagine", useMarkdown);
+                        return null;
+                    });
         } catch (Exception e) {
             System.err.println("Errore generale: " + e.getMessage());
             sendMessage(chatId, caption, useMarkdown);
         }
     }
 
-    private void sendPhotoWithButton(long chatId, String photoUrl, String caption, String model) {
+    private CompletableFuture<Void> sendPhotoWithButton(long chatId, String photoUrl, String caption, long carId) {
         try {
             if (photoUrl == null || photoUrl.isEmpty()) {
-                sendMessageWithButton(chatId, caption, model);
-                return;
+                return sendMessageWithButton(chatId, caption, carId);
             }
 
-            InputFile photo = new InputFile(photoUrl.trim());
             String safeCaption = caption.length() > 1024 ?
                     caption.substring(0, 1020) + "..." : caption;
 
-            // Crea il bottone inline usando InlineKeyboardRow
-            List<InlineKeyboardRow> keyboard = new ArrayList<>();
-            InlineKeyboardRow row = new InlineKeyboardRow();
-
-            row.add(InlineKeyboardButton.builder()
-                    .text("⭐ Aggiungi ai preferiti")
-                    .callbackData("add_favorite_" + model.replace(" ", "_"))
-                    .build());
-
-            keyboard.add(row);
-
-            InlineKeyboardMarkup keyboardMarkup = InlineKeyboardMarkup.builder()
-                    .keyboard(keyboard)
-                    .build();
-
-            SendPhoto sendPhoto = SendPhoto
+            SendPhoto.SendPhotoBuilder<?, ?> builder = SendPhoto
                     .builder()
                     .chatId(String.valueOf(chatId))
-                    .photo(photo)
                     .caption(safeCaption)
                     // NON usiamo parseMode per i dettagli tecnici
-                    .replyMarkup(keyboardMarkup)
-                    .build();
-
-            telegramClient.execute(sendPhoto);
-        } catch (TelegramApiException e) {
-            System.err.println("Errore Telegram inviando foto con bottone: " + e.getMessage());
-            // Fallback: invia messaggio con bottone
-            sendMessageWithButton(chatId, caption, model);
+                    .replyMarkup(favoriteKeyboard(carId));
+
+            return sendPhotoCached(chatId, photoUrl, photo -> builder.photo(photo).build())
+                    .thenAccept(sent -> {})
+                    .exceptionallyCompose(e -> {
+                        System.err.println("Errore Telegram inviando foto con bottone: " + rootCause(e).getMessage());
+                        // Fallback: invia messaggio con bottone
+                        return sendMessageWithButton(chatId, caption, carId);
+                    });
         } catch (Exception e) {
             System.err.println("Errore generale: " + e.getMessage());
-            sendMessage(chatId, caption, false);
+            return sendMessage(chatId, caption, false);
+        }
+    }
+
+    // Invia una foto riusando il file_id di Telegram se l'immagine è già stata inviata:
+    // Telegram non deve riscaricarla da Wikimedia. Se il file_id viene rifiutato si riprova con l'URL
+    private CompletableFuture<Message> sendPhotoCached(long chatId, String photoUrl, Function<InputFile, SendPhoto> request) {
+        String url = photoUrl.trim();
+        String fileId = Database.getInstance().getPhotoFileId(url);
+        InputFile photo = fileId != null ? new InputFile(fileId) : new InputFile(url);
+
+        CompletableFuture<Message> sent = sender.enqueue(chatId, () -> telegramClient.execute(request.apply(photo)));
+
+        if (fileId != null) {
+            sent = sent.exceptionallyCompose(e -> {
+                if (!isBadRequest(e)) {
+                    return CompletableFuture.failedFuture(e);
+                }
+                System.out.println("ℹ file_id non più valido, invio da URL: " + url);
+                Database.getInstance().removePhotoFileId(url);
+                return sender.enqueue(chatId, () -> telegramClient.execute(request.apply(new InputFile(url))));
+            });
         }
+
+        return sent.thenApply(message -> {
+            String newFileId = largestPhotoFileId(message);
+            if (newFileId != null && !newFileId.equals(fileId)) {
+                Database.getInstance().putPhotoFileId(url, newFileId);
+            }
+            return message;
+        });
+    }
+
+    // Telegram restituisce più formati della stessa foto: teniamo il più grande
+    private static String largestPhotoFileId(Message message) {
+        if (message == null || message.getPhoto() == null) return null;
+
+        return message.getPhoto().stream()
+                .max(Comparator.comparingLong(size -> (long) size.getWidth() * size.getHeight()))
+                .map(PhotoSize::getFileId)
+                .orElse(null);
+    }
+
+    // 400 Bad Request: tipicamente un file_id non più valido
+    private static boolean isBadRequest(Throwable e) {
+        return rootCause(e) instanceof TelegramApiRequestException requestError
+                && requestError.getErrorCode() != null && requestError.getErrorCode() == 400;
+    }
+
+    // Gli errori di invio arrivano avvolti in CompletionException
+    private static Throwable rootCause(Throwable e) {
+        while (e instanceof java.util.concurrent.CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static <T> T logSendError(String what, Throwable e) {
+        System.err.println("Errore Telegram inviando " + what + ": " + rootCause(e).getMessage());
+        return null;
     }
 }
\ No newline at end of file
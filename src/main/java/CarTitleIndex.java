@@ -0,0 +1,276 @@
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Indice per prefisso (trie) dei titoli di auto già risolti su Wikipedia, per i suggerimenti inline:
+// ogni titolo è indicizzato a partire da ogni sua parola ("f40" trova "Ferrari F40"),
+// i risultati sono ordinati per numero di ricerche. Nessuna chiamata a Wikipedia per tasto premuto.
+// Le ricerche vengono salvate nel database a blocchi (write-behind, come UserRegistry),
+// non a ogni risoluzione: niente attesa sul writer di SQLite durante le ricerche
+public final class CarTitleIndex implements AutoCloseable {
+
+    public static final class Entry {
+        private final String title;
+        private final String lang;
+        private volatile String imageUrl;
+        private final AtomicInteger hits;
+
+        private Entry(String title, String lang, String imageUrl, int hits) {
+            this.title = title;
+            this.lang = lang;
+            this.imageUrl = imageUrl;
+            this.hits = new AtomicInteger(hits);
+        }
+
+        public String getTitle() { return title; }
+        public String getLang() { return lang; }
+        public String getImageUrl() { return imageUrl; }
+        public int getHits() { return hits.get(); }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        List<Entry> entries;
+    }
+
+    // Numero massimo di voci esaminate per una ricerca (prefissi molto corti)
+    private static final int MAX_SCANNED = 2000;
+
+    private final Node root = new Node();
+    private final Map<String, Entry> byTitle = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Titoli più cercati (query vuota), ricalcolati solo dopo una modifica
+    private volatile List<Entry> popular;
+
+    // Risoluzioni non ancora salvate, per titolo e lingua (hits = incremento da applicare)
+    private final Map<String, Database.ResolvedTitle> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    // Contatori
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public CarTitleIndex() {
+        this(Config.getLong("TITLE_FLUSH_INTERVAL_MS", 5000));
+    }
+
+    public CarTitleIndex(long flushIntervalMs) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "title-index-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Costruisce l'indice dai titoli salvati nel database
+    public static CarTitleIndex fromDatabase() {
+        CarTitleIndex index = new CarTitleIndex();
+        for (Database.ResolvedTitle title : Database.getInstance().getResolvedTitles()) {
+            index.add(title.title(), title.lang(), title.imageUrl(), title.hits());
+        }
+        System.out.println("✓ Indice titoli: " + index.size() + " auto");
+        return index;
+    }
+
+    // Registra una pagina appena risolta: aggiorna subito l'indice, il database al prossimo salvataggio
+    public void recordResolved(WikiPage page) {
+        if (page == null || page.getTitle() == null) return;
+
+        add(page.getTitle(), page.getLang(), page.getImageUrl(), 1);
+        pending.merge(page.getTitle() + "\n" + page.getLang(),
+                new Database.ResolvedTitle(page.getTitle(), page.getLang(), page.getImageUrl(), 1),
+                CarTitleIndex::mergePending);
+    }
+
+    private static Database.ResolvedTitle mergePending(Database.ResolvedTitle older, Database.ResolvedTitle newer) {
+        String imageUrl = newer.imageUrl() != null ? newer.imageUrl() : older.imageUrl();
+        return new Database.ResolvedTitle(older.title(), older.lang(), imageUrl, older.hits() + newer.hits());
+    }
+
+    // Salva in un'unica transazione le risoluzioni accumulate
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) return;
+
+            List<Database.ResolvedTitle> batch = new ArrayList<>(pending.size());
+            for (String key : pending.keySet()) {
+                Database.ResolvedTitle title = pending.remove(key);
+                if (title != null) batch.add(title);
+            }
+
+            boolean saved = false;
+            try {
+                saved = Database.getInstance().recordResolvedTitles(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Errore salvataggio titoli: " + e.getMessage());
+            }
+
+            if (saved) {
+                flushes.incrementAndGet();
+                written.addAndGet(batch.size());
+            } else {
+                // Riproviamo al prossimo giro, sommando le risoluzioni arrivate nel frattempo
+                for (Database.ResolvedTitle title : batch) {
+                    pending.merge(title.title() + "\n" + title.lang(), title, CarTitleIndex::mergePending);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Ferma il salvataggio periodico e salva le risoluzioni ancora in sospeso
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // Aggiunge un titolo o ne incrementa il contatore se già presente
+    public void add(String title, String lang, String imageUrl, int hits) {
+        String key = normalize(title);
+        if (key.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            popular = null;
+            Entry existing = byTitle.get(key);
+            if (existing != null) {
+                existing.hits.addAndGet(hits);
+                if (imageUrl != null) existing.imageUrl = imageUrl;
+                return;
+            }
+
+            Entry entry = new Entry(title, lang, imageUrl, hits);
+            byTitle.put(key, entry);
+
+            // Un inserimento per ogni parola del titolo
+            for (int start = 0; start < key.length(); start++) {
+                if (start == 0 || key.charAt(start - 1) == ' ') {
+                    insert(key, start, entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(String key, int start, Entry entry) {
+        Node node = root;
+        for (int i = start; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        if (node.entries == null) node.entries = new ArrayList<>(1);
+        if (!node.entries.contains(entry)) node.entries.add(entry);
+    }
+
+    // Titoli che contengono una parola che inizia con il prefisso, i più cercati per primi
+    public List<Entry> search(String prefix, int limit) {
+        String key = normalize(prefix);
+
+        lock.readLock().lock();
+        try {
+            if (key.isEmpty()) {
+                List<Entry> cached = popular;
+                if (cached == null || cached.size() < Math.min(limit, byTitle.size())) {
+                    cached = top(byTitle.values(), limit);
+                    popular = cached;
+                }
+                return cached.subList(0, Math.min(limit, cached.size()));
+            }
+
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) return List.of();
+
+            // Visita del sottoalbero: le voci possono comparire più volte (una per parola)
+            Set<Entry> found = new LinkedHashSet<>();
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty() && found.size() < MAX_SCANNED) {
+                Node current = stack.pop();
+                if (current.entries != null) found.addAll(current.entries);
+                for (Node child : current.children.values()) stack.push(child);
+            }
+            return top(found, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::getHits).reversed()
+            .thenComparing(Entry::getTitle);
+
+    // Selezione dei migliori "limit" con un heap, senza ordinare tutte le voci
+    private static List<Entry> top(Collection<Entry> entries, int limit) {
+        if (limit <= 0) return List.of();
+
+        PriorityQueue<Entry> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Entry entry : entries) {
+            best.add(entry);
+            if (best.size() > limit) best.poll();
+        }
+
+        List<Entry> result = new ArrayList<>(best);
+        result.sort(RANKING);
+        return result;
+    }
+
+    // Titolo risolto che coincide con il testo dato (senza distinzione di maiuscole, accenti e punteggiatura)
+    public Entry find(String title) {
+        String key = normalize(title);
+        if (key.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            return byTitle.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byTitle.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Minuscolo, senza accenti né punteggiatura, spazi singoli
+    private static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "")
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CarTitleIndex[titles=%d, pending=%d, flushes=%d, written=%d]",
+                size(), pendingCount(), flushes.get(), written.get());
+    }
+}
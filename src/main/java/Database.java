@@ -1,21 +1,71 @@
+import org.sqlite.SQLiteConfig;
+
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+// Accesso thread-safe a SQLite in modalità WAL: tutte le scritture passano da un'unica
+// connessione (protetta da un lock), le letture da un piccolo pool di connessioni in sola lettura
+// che non aspettano le scritture in corso
 public class Database {
 
-    private static final String DB_URL = "jdbc:sqlite:Databases/CarbotDatabase.db";
+    private static final String DEFAULT_DB_URL = "jdbc:sqlite:Databases/CarbotDatabase.db";
     private static Database instance;
-    private Connection connection;
 
-    private Database() {
+    // Query dei preferiti (il loro piano di esecuzione è verificato da SchemaMigrationsTest)
+    static final String FAVORITES_BY_USER_SQL = """
+            SELECT c.CarId, c.Title, c.Lang, c.Summary, c.ImageUrl, c.InfoboxJson, c.FetchedAt
+            FROM Favorites f JOIN Cars c ON c.CarId = f.CarId
+            WHERE f.UserId = ? ORDER BY f.AddedAt DESC
+            """;
+    static final String FAVORITES_COUNT_SQL = "SELECT COUNT(*) FROM Favorites WHERE UserId = ?";
+    static final String IS_FAVORITE_SQL = "SELECT COUNT(*) FROM Favorites WHERE UserId = ? AND CarId = ?";
+
+    private final String url;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private CachedConnection connection;
+    private final BlockingQueue<CachedConnection> readers;
+    private final int readPoolSize;
+    private final long readWaitMs;
+    private final int cacheSizeKb;
+    private final long mmapSizeBytes;
+    private volatile boolean closed;
+    // Prepared statement riutilizzati / preparati (tutte le connessioni)
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(CachedConnection connection) throws SQLException;
+    }
+
+    // Package-private per i test, che usano un file temporaneo al posto del database del bot
+    Database(String url) {
+        this.url = url;
+        this.readPoolSize = Math.max(1, Config.getInt("DB_READ_POOL_SIZE", 4));
+        this.readWaitMs = Config.getLong("DB_READ_WAIT_MS", 5000);
+        this.cacheSizeKb = Config.getInt("DB_CACHE_SIZE_KB", 8192);
+        this.mmapSizeBytes = Config.getLong("DB_MMAP_SIZE_MB", 64) * 1024 * 1024;
+        this.readers = new ArrayBlockingQueue<>(readPoolSize);
+
         openConnection();
         createTables();
+        migrate();
+        // I lettori si aprono dopo lo scrittore: la modalità WAL è già attiva sul file
+        for (int i = 0; i < readPoolSize; i++) {
+            readers.add(openReader());
+        }
+        System.out.println("✓ Pool di lettura: " + readPoolSize + " connessioni");
     }
 
-    public static Database getInstance() {
+    public static synchronized Database getInstance() {
         if (instance == null) {
-            instance = new Database();
+            instance = new Database(Config.get("DB_URL", DEFAULT_DB_URL));
         }
         return instance;
     }
@@ -24,14 +74,109 @@ public class Database {
         try {
             if (connection == null || connection.isClosed()) {
                 System.out.println("Apertura connessione al database...");
-                connection = DriverManager.getConnection(DB_URL);
-                System.out.println("✓ Connessione stabilita");
+                if (connection != null) {
+                    // Riapertura: gli statement della vecchia connessione non sono più validi
+                    closeQuietly(connection);
+                }
+                Connection raw = DriverManager.getConnection(url);
+                connection = new CachedConnection(raw, statementHits, statementMisses);
+                try (Statement stmt = raw.createStatement()) {
+                    // WAL: le letture non bloccano le scritture e viceversa;
+                    // NORMAL è sicuro con WAL (si perde al massimo l'ultima transazione in caso di crash del sistema)
+                    stmt.execute("PRAGMA journal_mode = WAL");
+                    stmt.execute("PRAGMA synchronous = NORMAL");
+                    applyConnectionPragmas(stmt);
+                }
+                System.out.println("✓ Connessione stabilita (WAL)");
             }
         } catch (SQLException e) {
             throw new RuntimeException("Errore durante la connessione: " + e.getMessage());
         }
     }
 
+    // Connessione in sola lettura per il pool dei lettori
+    private CachedConnection openReader() {
+        try {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            Connection reader = DriverManager.getConnection(url, config.toProperties());
+            try (Statement stmt = reader.createStatement()) {
+                applyConnectionPragmas(stmt);
+            }
+            return new CachedConnection(reader, statementHits, statementMisses);
+        } catch (SQLException e) {
+            throw new RuntimeException("Errore apertura connessione in lettura: " + e.getMessage());
+        }
+    }
+
+    // Impostazioni valide per la singola connessione (non salvate nel file)
+    private void applyConnectionPragmas(Statement stmt) throws SQLException {
+        stmt.execute("PRAGMA busy_timeout = 5000");
+        stmt.execute("PRAGMA cache_size = -" + cacheSizeKb);
+        stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+    }
+
+    // Esegue una scrittura sull'unica connessione di scrittura
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            if (closed) throw new SQLException("Database chiuso");
+            ensureConnection();
+            return work.run(connection);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Esegue una lettura su una connessione del pool (attende se sono tutte occupate)
+    private <T> T read(SqlWork<T> work) throws SQLException {
+        CachedConnection reader = borrowReader();
+        try {
+            return work.run(reader);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    private CachedConnection borrowReader() throws SQLException {
+        if (closed) throw new SQLException("Database chiuso");
+        CachedConnection reader;
+        try {
+            reader = readers.poll(readWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa connessione interrotta", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Nessuna connessione di lettura libera entro " + readWaitMs + " ms");
+        }
+        if (reader.isClosed()) {
+            // Connessione persa: la sostituiamo (con i suoi statement)
+            closeQuietly(reader);
+            try {
+                return openReader();
+            } catch (RuntimeException e) {
+                readers.offer(reader);
+                throw new SQLException(e.getMessage(), e);
+            }
+        }
+        return reader;
+    }
+
+    private void releaseReader(CachedConnection reader) {
+        if (closed || !readers.offer(reader)) {
+            closeQuietly(reader);
+        }
+    }
+
+    private void closeQuietly(CachedConnection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Errore chiusura connessione: " + e.getMessage());
+        }
+    }
+
     private void createTables() {
         String createUsersTable = """
             CREATE TABLE IF NOT EXISTS Users (
@@ -43,6 +188,7 @@ public class Database {
             )
         """;
 
+        // Struttura originale: la migrazione 5 la ricostruisce con CarId e UNIQUE(UserId, CarId)
         String createFavoritesTable = """
             CREATE TABLE IF NOT EXISTS Favorites (
                 FavoriteId INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -54,15 +200,61 @@ public class Database {
             )
         """;
 
-        try (Statement stmt = connection.createStatement()) {
+        String createLookupCacheTable = """
+            CREATE TABLE IF NOT EXISTS LookupCache (
+                CacheKey TEXT PRIMARY KEY,
+                Value TEXT NOT NULL,
+                ExpiresAt INTEGER NOT NULL
+            )
+        """;
+
+        String createPhotoFileIdsTable = """
+            CREATE TABLE IF NOT EXISTS PhotoFileIds (
+                ImageUrl TEXT PRIMARY KEY,
+                FileId TEXT NOT NULL,
+                UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+        """;
+
+        String createResolvedTitlesTable = """
+            CREATE TABLE IF NOT EXISTS ResolvedTitles (
+                Title TEXT NOT NULL,
+                Lang TEXT NOT NULL,
+                ImageUrl TEXT,
+                Hits INTEGER NOT NULL DEFAULT 1,
+                LastSeen TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                PRIMARY KEY (Title, Lang)
+            )
+        """;
+
+        try (Statement stmt = connection.getConnection().createStatement()) {
             stmt.execute(createUsersTable);
             stmt.execute(createFavoritesTable);
+            stmt.execute(createLookupCacheTable);
+            stmt.execute(createPhotoFileIdsTable);
+            stmt.execute(createResolvedTitlesTable);
             System.out.println("✓ Tabelle create/verificate");
         } catch (SQLException e) {
             System.err.println("Errore creazione tabelle: " + e.getMessage());
         }
     }
 
+    // Porta lo schema all'ultima versione (PRAGMA user_version), una migrazione per transazione
+    private void migrate() {
+        try {
+            int from = SchemaMigrations.currentVersion(connection.getConnection());
+            int applied = SchemaMigrations.apply(connection.getConnection());
+            if (applied > 0) {
+                System.out.println("✓ Schema aggiornato dalla versione " + from + " alla " +
+                        SchemaMigrations.latestVersion());
+            } else {
+                System.out.println("✓ Schema alla versione " + from);
+            }
+        } catch (SQLException e) {
+            System.err.println("Errore migrazione schema: " + e.getMessage());
+        }
+    }
+
     // Aggiungi o aggiorna un utente
     public void addOrUpdateUser(long userId, String username, String firstName, String lastName) {
         String sql = """
@@ -75,33 +267,184 @@ public class Database {
         """;
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
                 pstmt.setString(2, username);
                 pstmt.setString(3, firstName);
                 pstmt.setString(4, lastName);
                 pstmt.executeUpdate();
                 System.out.println("✓ Utente salvato: " + userId);
-            }
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println("Errore salvataggio utente: " + e.getMessage());
         }
     }
 
-    // Aggiungi un'auto ai preferiti
-    public boolean addFavorite(long userId, String carName) {
-        String sql = "INSERT INTO Favorites (UserId, CarName) VALUES (?, ?)";
+    // Dati di un utente Telegram
+    public record UserRecord(long userId, String username, String firstName, String lastName) {}
+
+    // Salva o aggiorna più utenti in un'unica transazione
+    public boolean upsertUsers(List<UserRecord> users) {
+        if (users.isEmpty()) return true;
+
+        String sql = """
+            INSERT INTO Users (UserId, Username, FirstName, LastName)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT(UserId) DO UPDATE SET
+                Username = excluded.Username,
+                FirstName = excluded.FirstName,
+                LastName = excluded.LastName
+        """;
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return write(connection -> {
+                Connection raw = connection.getConnection();
+                PreparedStatement pstmt = connection.prepare(sql);
+                raw.setAutoCommit(false);
+                try {
+                    for (UserRecord user : users) {
+                        pstmt.setLong(1, user.userId());
+                        pstmt.setString(2, user.username());
+                        pstmt.setString(3, user.firstName());
+                        pstmt.setString(4, user.lastName());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    raw.commit();
+                    System.out.println("✓ Utenti salvati: " + users.size());
+                    return true;
+                } catch (SQLException e) {
+                    // Lo statement resta in cache: niente righe residue per il prossimo batch
+                    pstmt.clearBatch();
+                    raw.rollback();
+                    throw e;
+                } finally {
+                    raw.setAutoCommit(true);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore salvataggio utenti: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Auto del catalogo: titolo canonico di Wikipedia e lingua, con i dati dell'ultima scheda scaricata.
+    // Lang vuota = nome scritto dall'utente mai risolto (preferiti salvati prima del catalogo)
+    public record Car(long carId, String title, String lang, String summary, String imageUrl,
+                      String infoboxJson, Long fetchedAt) {}
+
+    private static final String CAR_COLUMNS = "CarId, Title, Lang, Summary, ImageUrl, InfoboxJson, FetchedAt";
+
+    private static Car readCar(ResultSet rs) throws SQLException {
+        long fetchedAt = rs.getLong("FetchedAt");
+        return new Car(rs.getLong("CarId"), rs.getString("Title"), rs.getString("Lang"), rs.getString("Summary"),
+                rs.getString("ImageUrl"), rs.getString("InfoboxJson"), rs.wasNull() ? null : fetchedAt);
+    }
+
+    // Salva o aggiorna una scheda nel catalogo; i campi null non cancellano quelli già salvati
+    public Car upsertCar(String title, String lang, String summary, String imageUrl, String infoboxJson) {
+        String sql = """
+            INSERT INTO Cars (Title, Lang, Summary, ImageUrl, InfoboxJson, FetchedAt)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT(Title, Lang) DO UPDATE SET
+                Summary = COALESCE(excluded.Summary, Summary),
+                ImageUrl = COALESCE(excluded.ImageUrl, ImageUrl),
+                InfoboxJson = COALESCE(excluded.InfoboxJson, InfoboxJson),
+                FetchedAt = excluded.FetchedAt
+            RETURNING\s""" + CAR_COLUMNS;
+
+        try {
+            return write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, title);
+                pstmt.setString(2, lang);
+                pstmt.setString(3, summary);
+                pstmt.setString(4, imageUrl);
+                pstmt.setString(5, infoboxJson);
+                pstmt.setLong(6, System.currentTimeMillis());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readCar(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore salvataggio auto: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Voce del catalogo per titolo e lingua, creata vuota se assente
+    public Car ensureCar(String title, String lang) {
+        String sql = """
+            INSERT INTO Cars (Title, Lang) VALUES (?, ?)
+            ON CONFLICT(Title, Lang) DO UPDATE SET Title = excluded.Title
+            RETURNING\s""" + CAR_COLUMNS;
+
+        try {
+            return write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, title);
+                pstmt.setString(2, lang);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readCar(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore salvataggio auto: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public Car getCar(long carId) {
+        String sql = "SELECT " + CAR_COLUMNS + " FROM Cars WHERE CarId = ?";
+
+        try {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setLong(1, carId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readCar(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore lettura auto: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Voce del catalogo con questo titolo (senza distinzione di maiuscole), preferendo quelle risolte
+    public Car findCarByTitle(String title) {
+        String sql = "SELECT " + CAR_COLUMNS + " FROM Cars WHERE Title = ? COLLATE NOCASE ORDER BY Lang = '', FetchedAt DESC LIMIT 1";
+
+        try {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, title);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readCar(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore ricerca auto: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Aggiungi un'auto del catalogo ai preferiti
+    public boolean addFavorite(long userId, Car car) {
+        String sql = "INSERT INTO Favorites (UserId, CarName, CarId) VALUES (?, ?, ?)";
+
+        try {
+            return write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
-                pstmt.setString(2, carName);
+                pstmt.setString(2, car.title());
+                pstmt.setLong(3, car.carId());
                 pstmt.executeUpdate();
-                System.out.println("✓ Preferito aggiunto: " + carName + " per utente " + userId);
+                System.out.println("✓ Preferito aggiunto: " + car.title() + " per utente " + userId);
                 return true;
-            }
+            });
         } catch (SQLException e) {
             // Errore UNIQUE constraint = già nei preferiti
             if (e.getMessage().contains("UNIQUE")) {
@@ -114,18 +457,18 @@ public class Database {
     }
 
     // Rimuovi un'auto dai preferiti
-    public boolean removeFavorite(long userId, String carName) {
-        String sql = "DELETE FROM Favorites WHERE UserId = ? AND CarName = ?";
+    public boolean removeFavorite(long userId, long carId) {
+        String sql = "DELETE FROM Favorites WHERE UserId = ? AND CarId = ?";
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
-                pstmt.setString(2, carName);
+                pstmt.setLong(2, carId);
                 int deleted = pstmt.executeUpdate();
-                System.out.println("✓ Preferito rimosso: " + carName);
+                System.out.println("✓ Preferito rimosso: " + carId);
                 return deleted > 0;
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Errore rimozione preferito: " + e.getMessage());
             return false;
@@ -133,83 +476,293 @@ public class Database {
     }
 
     // Verifica se un'auto è nei preferiti
-    public boolean isFavorite(long userId, String carName) {
-        String sql = "SELECT COUNT(*) FROM Favorites WHERE UserId = ? AND CarName = ?";
+    public boolean isFavorite(long userId, long carId) {
+        String sql = IS_FAVORITE_SQL;
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
-                pstmt.setString(2, carName);
+                pstmt.setLong(2, carId);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     return rs.next() && rs.getInt(1) > 0;
                 }
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Errore verifica preferito: " + e.getMessage());
             return false;
         }
     }
 
-    // Ottieni tutti i preferiti di un utente
-    public List<String> getUserFavorites(long userId) {
-        List<String> favorites = new ArrayList<>();
-        String sql = "SELECT CarName FROM Favorites WHERE UserId = ? ORDER BY AddedAt DESC";
+    // Ottieni tutti i preferiti di un utente (dal catalogo, i più recenti per primi)
+    public List<Car> getUserFavorites(long userId) {
+        String sql = FAVORITES_BY_USER_SQL;
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return read(connection -> {
+                List<Car> favorites = new ArrayList<>();
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        favorites.add(rs.getString("CarName"));
+                        favorites.add(readCar(rs));
                     }
                 }
-            }
+                return favorites;
+            });
         } catch (SQLException e) {
             System.err.println("Errore recupero preferiti: " + e.getMessage());
+            return new ArrayList<>();
         }
-
-        return favorites;
     }
 
     // Conta i preferiti di un utente
     public int getFavoritesCount(long userId) {
-        String sql = "SELECT COUNT(*) FROM Favorites WHERE UserId = ?";
+        String sql = FAVORITES_COUNT_SQL;
 
         try {
-            ensureConnection();
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
                 pstmt.setLong(1, userId);
                 try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getInt(1);
-                    }
+                    return rs.next() ? rs.getInt(1) : 0;
                 }
-            }
+            });
         } catch (SQLException e) {
             System.err.println("Errore conteggio preferiti: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Voce della cache persistente delle ricerche
+    public record CacheEntry(String value, long expiresAt) {}
+
+    // Leggi una voce non scaduta dalla cache delle ricerche
+    public CacheEntry getCacheEntry(String key, long now) {
+        String sql = "SELECT Value, ExpiresAt FROM LookupCache WHERE CacheKey = ? AND ExpiresAt > ?";
+
+        try {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, key);
+                pstmt.setLong(2, now);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? new CacheEntry(rs.getString("Value"), rs.getLong("ExpiresAt")) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore lettura cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Salva o aggiorna una voce nella cache delle ricerche
+    public void putCacheEntry(String key, String value, long expiresAt) {
+        String sql = """
+            INSERT INTO LookupCache (CacheKey, Value, ExpiresAt)
+            VALUES (?, ?, ?)
+            ON CONFLICT(CacheKey) DO UPDATE SET
+                Value = excluded.Value,
+                ExpiresAt = excluded.ExpiresAt
+        """;
+
+        try {
+            write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, key);
+                pstmt.setString(2, value);
+                pstmt.setLong(3, expiresAt);
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore scrittura cache: " + e.getMessage());
+        }
+    }
+
+    // Elimina le voci scadute dalla cache delle ricerche
+    public int purgeExpiredCacheEntries(long now) {
+        String sql = "DELETE FROM LookupCache WHERE ExpiresAt <= ?";
+
+        try {
+            return write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setLong(1, now);
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore pulizia cache: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // file_id Telegram di un'immagine già inviata, o null se mai inviata
+    public String getPhotoFileId(String imageUrl) {
+        String sql = "SELECT FileId FROM PhotoFileIds WHERE ImageUrl = ?";
+
+        try {
+            return read(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, imageUrl);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getString("FileId") : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore lettura file_id: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Salva o aggiorna il file_id Telegram di un'immagine
+    public void putPhotoFileId(String imageUrl, String fileId) {
+        String sql = """
+            INSERT INTO PhotoFileIds (ImageUrl, FileId)
+            VALUES (?, ?)
+            ON CONFLICT(ImageUrl) DO UPDATE SET
+                FileId = excluded.FileId,
+                UpdatedAt = CURRENT_TIMESTAMP
+        """;
+
+        try {
+            write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, imageUrl);
+                pstmt.setString(2, fileId);
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore salvataggio file_id: " + e.getMessage());
         }
+    }
+
+    // Dimentica un file_id rifiutato da Telegram
+    public void removePhotoFileId(String imageUrl) {
+        String sql = "DELETE FROM PhotoFileIds WHERE ImageUrl = ?";
 
-        return 0;
+        try {
+            write(connection -> {
+                PreparedStatement pstmt = connection.prepare(sql);
+                pstmt.setString(1, imageUrl);
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore rimozione file_id: " + e.getMessage());
+        }
     }
 
-    // Assicura che la connessione sia aperta
+    // Titolo di auto già risolto su Wikipedia (per i suggerimenti inline)
+    public record ResolvedTitle(String title, String lang, String imageUrl, int hits) {}
+
+    // Registra in un'unica transazione le risoluzioni accumulate: hits è l'incremento del contatore
+    public boolean recordResolvedTitles(List<ResolvedTitle> titles) {
+        if (titles.isEmpty()) return true;
+
+        String sql = """
+            INSERT INTO ResolvedTitles (Title, Lang, ImageUrl, Hits)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT(Title, Lang) DO UPDATE SET
+                ImageUrl = COALESCE(excluded.ImageUrl, ImageUrl),
+                Hits = Hits + excluded.Hits,
+                LastSeen = CURRENT_TIMESTAMP
+        """;
+
+        try {
+            return write(connection -> {
+                Connection raw = connection.getConnection();
+                PreparedStatement pstmt = connection.prepare(sql);
+                raw.setAutoCommit(false);
+                try {
+                    for (ResolvedTitle title : titles) {
+                        pstmt.setString(1, title.title());
+                        pstmt.setString(2, title.lang());
+                        pstmt.setString(3, title.imageUrl());
+                        pstmt.setInt(4, title.hits());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    raw.commit();
+                    return true;
+                } catch (SQLException e) {
+                    pstmt.clearBatch();
+                    raw.rollback();
+                    throw e;
+                } finally {
+                    raw.setAutoCommit(true);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore salvataggio titoli: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Tutti i titoli risolti, i più cercati per primi
+    public List<ResolvedTitle> getResolvedTitles() {
+        String sql = "SELECT Title, Lang, ImageUrl, Hits FROM ResolvedTitles ORDER BY Hits DESC";
+
+        try {
+            return read(connection -> {
+                List<ResolvedTitle> titles = new ArrayList<>();
+                PreparedStatement pstmt = connection.prepare(sql);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        titles.add(new ResolvedTitle(rs.getString("Title"), rs.getString("Lang"),
+                                rs.getString("ImageUrl"), rs.getInt("Hits")));
+                    }
+                }
+                return titles;
+            });
+        } catch (SQLException e) {
+            System.err.println("Errore recupero titoli: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Prepared statement riutilizzati dalla cache delle connessioni
+    public long getStatementHits() {
+        return statementHits.get();
+    }
+
+    // Prepared statement preparati da zero (prima esecuzione o connessione riaperta)
+    public long getStatementMisses() {
+        return statementMisses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Database[readers=%d, statementHits=%d, statementMisses=%d]",
+                readPoolSize, getStatementHits(), getStatementMisses());
+    }
+
+    // Assicura che la connessione di scrittura sia aperta (chiamato con writeLock acquisito)
     private void ensureConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
             openConnection();
         }
     }
 
-    // Chiudi la connessione
+    // Chiudi le connessioni (quelle di lettura in uso vengono chiuse quando tornano al pool)
     public void close() {
+        closed = true;
+        CachedConnection reader;
+        while ((reader = readers.poll()) != null) {
+            closeQuietly(reader);
+        }
+
+        writeLock.lock();
         try {
             if (connection != null && !connection.isClosed()) {
+                // Riporta il WAL nel file principale prima di chiudere
+                try (Statement stmt = connection.getConnection().createStatement()) {
+                    stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                }
                 connection.close();
                 System.out.println("✓ Connessione chiusa");
             }
         } catch (SQLException e) {
             System.err.println("Errore chiusura connessione: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+import okhttp3.Call;
+
+import java.util.concurrent.TimeUnit;
+
+// Scadenza assoluta di una richiesta (su tempo monotono), passata alle chiamate HTTP tramite CallScope
+public final class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public long remainingNanos() {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    // La chiamata non può durare oltre il tempo rimasto (resta il timeout del client se più breve)
+    public void applyTo(Call call) {
+        long remaining = Math.max(1, remainingNanos());
+        long timeoutNanos = call.timeout().timeoutNanos();
+        if (timeoutNanos == 0 || remaining < timeoutNanos) {
+            call.timeout().timeout(remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline[remaining=" + remainingMillis() + "ms]";
+    }
+}
@@ -0,0 +1,13 @@
+// Tempo a disposizione della richiesta esaurito prima della risposta di Wikipedia:
+// trattato come indisponibilità (si possono servire dati in cache) ma contato a parte
+public class DeadlineExceededException extends UpstreamUnavailableException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Preferiti degli utenti in memoria, caricati da SQLite al primo accesso e aggiornati
+// in scrittura (write-through) da add/remove. LRU sugli utenti: quelli inattivi vengono rimossi
+// oltre FAVORITES_CACHE_MAX_USERS. isFavorite e count non toccano il database se l'utente è in memoria
+public class FavoritesCache {
+    private final int maxUsers;
+    // Per utente: auto del catalogo per CarId, in ordine di inserimento (la più recente in fondo)
+    private final LinkedHashMap<Long, LinkedHashMap<Long, Database.Car>> users;
+    // Scritture avviate: un caricamento concorrente a una scrittura non viene messo in cache
+    private final AtomicLong writes = new AtomicLong();
+
+    // Contatori
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FavoritesCache() {
+        this(Config.getInt("FAVORITES_CACHE_MAX_USERS", 1000));
+    }
+
+    public FavoritesCache(int maxUsers) {
+        this.maxUsers = maxUsers;
+
+        // accessOrder = true: l'ordine di iterazione segue l'ultimo accesso (LRU)
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, LinkedHashMap<Long, Database.Car>> eldest) {
+                if (size() > FavoritesCache.this.maxUsers) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Preferiti dell'utente, i più recenti per primi
+    public List<Database.Car> getFavorites(long userId) {
+        synchronized (users) {
+            LinkedHashMap<Long, Database.Car> favorites = users.get(userId);
+            if (favorites != null) {
+                hits.incrementAndGet();
+                return new ArrayList<>(favorites.sequencedValues().reversed());
+            }
+        }
+        return new ArrayList<>(load(userId).sequencedValues().reversed());
+    }
+
+    public boolean isFavorite(long userId, long carId) {
+        synchronized (users) {
+            LinkedHashMap<Long, Database.Car> favorites = users.get(userId);
+            if (favorites != null) {
+                hits.incrementAndGet();
+                return favorites.containsKey(carId);
+            }
+        }
+        return load(userId).containsKey(carId);
+    }
+
+    public int count(long userId) {
+        synchronized (users) {
+            LinkedHashMap<Long, Database.Car> favorites = users.get(userId);
+            if (favorites != null) {
+                hits.incrementAndGet();
+                return favorites.size();
+            }
+        }
+        return load(userId).size();
+    }
+
+    // Aggiunge ai preferiti; false se era già presente (senza scrivere sul database se l'utente è in memoria)
+    public boolean add(long userId, Database.Car car) {
+        if (isFavorite(userId, car.carId())) {
+            return false;
+        }
+
+        writes.incrementAndGet();
+        boolean added = Database.getInstance().addFavorite(userId, car);
+        if (added) {
+            synchronized (users) {
+                LinkedHashMap<Long, Database.Car> favorites = users.get(userId);
+                if (favorites != null) {
+                    favorites.put(car.carId(), car);
+                }
+            }
+        }
+        return added;
+    }
+
+    public boolean remove(long userId, long carId) {
+        writes.incrementAndGet();
+        boolean removed = Database.getInstance().removeFavorite(userId, carId);
+        if (removed) {
+            synchronized (users) {
+                LinkedHashMap<Long, Database.Car> favorites = users.get(userId);
+                if (favorites != null) {
+                    favorites.remove(carId);
+                }
+            }
+        }
+        return removed;
+    }
+
+    // Scheda del catalogo aggiornata: la sostituisce nei preferiti degli utenti in memoria
+    public void updateCar(Database.Car car) {
+        synchronized (users) {
+            for (LinkedHashMap<Long, Database.Car> favorites : users.values()) {
+                favorites.replace(car.carId(), car);
+            }
+        }
+    }
+
+    // Legge i preferiti da SQLite e li mette in cache, se nel frattempo non ci sono state scritture
+    private LinkedHashMap<Long, Database.Car> load(long userId) {
+        misses.incrementAndGet();
+        long writesBefore = writes.get();
+
+        // Il database li restituisce dal più recente: in memoria il più recente va in fondo
+        LinkedHashMap<Long, Database.Car> favorites = new LinkedHashMap<>();
+        for (Database.Car car : Database.getInstance().getUserFavorites(userId).reversed()) {
+            favorites.put(car.carId(), car);
+        }
+
+        // Copie: la mappa in cache si modifica solo sotto lock
+        synchronized (users) {
+            LinkedHashMap<Long, Database.Car> loaded = users.get(userId);
+            if (loaded != null) {
+                return new LinkedHashMap<>(loaded);
+            }
+            if (writes.get() == writesBefore) {
+                users.put(userId, favorites);
+                return new LinkedHashMap<>(favorites);
+            }
+        }
+        return favorites;
+    }
+
+    public int size() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    // Getters contatori
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FavoritesCache[users=%d/%d, hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%]",
+                size(), maxUsers, getHits(), getMisses(), getEvictions(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,160 @@
+import okhttp3.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Trasporto HTTP condiviso verso Wikipedia: pool di connessioni e dispatcher dimensionati,
+// timeout per endpoint e cache HTTP su disco con rivalidazione condizionale (ETag / Last-Modified)
+public class HttpTransport {
+
+    public enum Endpoint {
+        SEARCH(8_000),
+        SUMMARY(5_000),
+        PARSE(15_000);
+
+        private final long defaultReadTimeoutMs;
+
+        Endpoint(long defaultReadTimeoutMs) {
+            this.defaultReadTimeoutMs = defaultReadTimeoutMs;
+        }
+    }
+
+    private static final String SUMMARY_PATH = "/api/rest_v1/page/summary/";
+
+    private final OkHttpClient baseClient;
+    private final Map<Endpoint, OkHttpClient> clients = new EnumMap<>(Endpoint.class);
+    private final Cache cache;
+
+    public HttpTransport() {
+        ConnectionPool pool = new ConnectionPool(
+                Config.getInt("HTTP_MAX_IDLE_CONNECTIONS", 10),
+                Config.getLong("HTTP_KEEP_ALIVE_SECONDS", 300),
+                TimeUnit.SECONDS);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Config.getInt("HTTP_MAX_REQUESTS", 64));
+        dispatcher.setMaxRequestsPerHost(Config.getInt("HTTP_MAX_REQUESTS_PER_HOST", 16));
+
+        long cacheSizeMb = Config.getLong("HTTP_CACHE_SIZE_MB", 50);
+        this.cache = cacheSizeMb > 0 ?
+                new Cache(new File(Config.get("HTTP_CACHE_DIR", "cache/http")), cacheSizeMb * 1024 * 1024) :
+                null;
+
+        // Timeout di connessione predefinito: usato dal warm-up e dagli endpoint senza un valore proprio
+        long connectTimeout = Config.getLong("HTTP_CONNECT_TIMEOUT_MS", 5_000);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .addNetworkInterceptor(HttpTransport::revalidateSummaries);
+        if (cache != null) {
+            builder.cache(cache);
+        }
+        this.baseClient = builder.build();
+
+        // Client per endpoint: condividono pool, dispatcher e cache, cambiano solo i timeout
+        for (Endpoint endpoint : Endpoint.values()) {
+            String name = endpoint.name();
+            long endpointConnectTimeout = Config.getLong("HTTP_" + name + "_CONNECT_TIMEOUT_MS", connectTimeout);
+            long readTimeout = Config.getLong("HTTP_" + name + "_READ_TIMEOUT_MS", endpoint.defaultReadTimeoutMs);
+            long callTimeout = Config.getLong("HTTP_" + name + "_CALL_TIMEOUT_MS", readTimeout * 2);
+
+            clients.put(endpoint, baseClient.newBuilder()
+                    .connectTimeout(endpointConnectTimeout, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                    .callTimeout(callTimeout, TimeUnit.MILLISECONDS)
+                    .build());
+        }
+    }
+
+    public Call newCall(Endpoint endpoint, Request request) {
+        return clients.get(endpoint).newCall(request);
+    }
+
+    // Le risposte del summary con un validatore vengono salvate ma sempre rivalidate:
+    // se la pagina non è cambiata Wikipedia risponde 304 senza body
+    private static Response revalidateSummaries(Interceptor.Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+
+        if (!chain.request().url().encodedPath().contains(SUMMARY_PATH) || !response.isSuccessful()) {
+            return response;
+        }
+        if (response.header("ETag") == null && response.header("Last-Modified") == null) {
+            return response;
+        }
+
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    // Apre in anticipo (in parallelo) le connessioni verso gli host indicati: DNS e handshake TLS
+    // non pesano sulla prima richiesta di un utente. Attende al massimo timeoutMs
+    public int warmUp(String userAgent, long timeoutMs, String... urls) {
+        CountDownLatch done = new CountDownLatch(urls.length);
+        AtomicInteger connected = new AtomicInteger();
+
+        for (String url : urls) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .head()
+                    .header("User-Agent", userAgent)
+                    .build();
+
+            baseClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    connected.incrementAndGet();
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    System.err.println("Warm-up HTTP fallito per " + call.request().url().host() + ": " + e.getMessage());
+                    done.countDown();
+                }
+            });
+        }
+
+        try {
+            done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return connected.get();
+    }
+
+    // Chiude thread del dispatcher, connessioni e cache su disco
+    public void close() {
+        baseClient.dispatcher().executorService().shutdown();
+        baseClient.connectionPool().evictAll();
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                System.err.println("Errore chiusura cache HTTP: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        ConnectionPool pool = baseClient.connectionPool();
+        String cacheStats = cache == null ? "disabled" : String.format(Locale.ROOT,
+                "requests=%d, network=%d, hits=%d", cache.requestCount(), cache.networkCount(), cache.hitCount());
+        return String.format(Locale.ROOT, "HttpTransport[connections=%d, idle=%d, cache(%s)]",
+                pool.connectionCount(), pool.idleConnectionCount(), cacheStats);
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+// Automa di Aho-Corasick: costruito una volta, trova tutte le parole chiave
+// in un testo con una sola scansione (case-insensitive), con le relative posizioni
+public final class KeywordMatcher {
+
+    public record Match(String keyword, int start, int end) {
+        // La corrispondenza inizia all'inizio di una parola (es. "automobil" in "automobili")
+        public boolean startsWord(CharSequence text) {
+            return start == 0 || !isWordChar(text.charAt(start - 1));
+        }
+
+        // La corrispondenza è una parola intera (es. "gt" ma non "gt" dentro "lunghezza")
+        public boolean isWholeWord(CharSequence text) {
+            return startsWord(text) && (end == text.length() || !isWordChar(text.charAt(end)));
+        }
+
+        // Parola intera, ammesso il plurale con "s" finale (es. "suv" in "SUVs")
+        public boolean isWholeWordOrPlural(CharSequence text) {
+            if (isWholeWord(text)) return true;
+            int after = end + 1;
+            return startsWord(text) && end < text.length() && Character.toLowerCase(text.charAt(end)) == 's' &&
+                    (after == text.length() || !isWordChar(text.charAt(after)));
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        Node fail;
+        // Parole che terminano in questo nodo (incluse quelle raggiungibili via fail)
+        List<String> outputs = List.of();
+    }
+
+    private final Node root = new Node();
+    private final List<String> keywords;
+
+    public KeywordMatcher(Collection<String> keywords) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.isEmpty()) {
+                unique.add(normalized);
+            }
+        }
+        this.keywords = List.copyOf(unique);
+
+        for (String keyword : this.keywords) {
+            insert(keyword);
+        }
+        buildFailureLinks();
+    }
+
+    // Costruisce il matcher da una lista separata da virgole in config.properties
+    public static KeywordMatcher fromConfig(String configKey, String... defaults) {
+        String configured = Config.get(configKey);
+        if (configured == null || configured.isBlank()) {
+            return new KeywordMatcher(List.of(defaults));
+        }
+        return new KeywordMatcher(List.of(configured.split(",")));
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    // Tutte le occorrenze (anche sovrapposte) nell'ordine in cui terminano nel testo
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        Node node = root;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.children.getOrDefault(c, root);
+
+            for (String keyword : node.outputs) {
+                matches.add(new Match(keyword, i + 1 - keyword.length(), i + 1));
+            }
+        }
+
+        return matches;
+    }
+
+    private void insert(String keyword) {
+        Node node = root;
+        for (int i = 0; i < keyword.length(); i++) {
+            node = node.children.computeIfAbsent(keyword.charAt(i), k -> new Node());
+        }
+        List<String> outputs = new ArrayList<>(node.outputs);
+        outputs.add(keyword);
+        node.outputs = outputs;
+    }
+
+    // BFS: collega ogni nodo al suffisso proprio più lungo presente nel trie
+    private void buildFailureLinks() {
+        Queue<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+
+        for (Node child : root.children.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node current = queue.remove();
+
+            for (Map.Entry<Character, Node> entry : current.children.entrySet()) {
+                char c = entry.getKey();
+                Node child = entry.getValue();
+
+                Node fail = current.fail;
+                while (fail != root && !fail.children.containsKey(c)) {
+                    fail = fail.fail;
+                }
+                Node target = fail.children.get(c);
+                child.fail = target != null && target != child ? target : root;
+
+                if (!child.fail.outputs.isEmpty()) {
+                    List<String> merged = new ArrayList<>(child.outputs);
+                    merged.addAll(child.fail.outputs);
+                    child.outputs = merged;
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+}
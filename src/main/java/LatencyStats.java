@@ -0,0 +1,37 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Statistiche minime di latenza (conteggio, media, massimo), aggiornabili da più thread
+public class LatencyStats {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Registra il tempo trascorso da startedAt (System.nanoTime())
+    public void recordSince(long startedAt) {
+        record(System.nanoTime() - startedAt);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getAverageMs() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / (n * 1_000_000.0);
+    }
+
+    public double getMaxMs() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[count=%d, avg=%.1fms, max=%.1fms]", getCount(), getAverageMs(), getMaxMs());
+    }
+}
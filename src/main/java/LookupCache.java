@@ -0,0 +1,155 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache a due livelli per i risultati delle ricerche su Wikipedia:
+// LRU in memoria con TTL per voce, appoggiata alla tabella LookupCache del database
+public class LookupCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    // Per quanto tempo dopo la scadenza una voce può ancora essere servita come "stale"
+    private final long staleMillis;
+    private final boolean persistent;
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Contatori
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+
+    private record Entry(String value, long expiresAt) {
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    public LookupCache() {
+        this(Config.getInt("LOOKUP_CACHE_MAX_ENTRIES", 500),
+                Config.getLong("LOOKUP_CACHE_TTL_MINUTES", 24 * 60) * 60_000L,
+                Config.getLong("LOOKUP_CACHE_STALE_MINUTES", 7 * 24 * 60) * 60_000L,
+                Config.getBoolean("LOOKUP_CACHE_PERSISTENT", true));
+    }
+
+    public LookupCache(int maxEntries, long ttlMillis, long staleMillis, boolean persistent) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+        this.persistent = persistent;
+
+        // accessOrder = true: l'ordine di iterazione segue l'ultimo accesso (LRU)
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > LookupCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if (persistent) {
+            int purged = Database.getInstance().purgeExpiredCacheEntries(System.currentTimeMillis() - staleMillis);
+            if (purged > 0) {
+                System.out.println("✓ Cache: rimosse " + purged + " voci scadute");
+            }
+        }
+    }
+
+    // Restituisce il valore in cache o null se assente/scaduto
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(now)) {
+                    hits.incrementAndGet();
+                    return entry.value();
+                }
+                // La voce scaduta resta in memoria: può servire come dato stale
+                expirations.incrementAndGet();
+            }
+        }
+
+        // Secondo livello: SQLite
+        if (persistent) {
+            Database.CacheEntry stored = Database.getInstance().getCacheEntry(key, now);
+            if (stored != null) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(stored.value(), stored.expiresAt()));
+                }
+                diskHits.incrementAndGet();
+                return stored.value();
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // Valore anche se scaduto (entro la finestra stale): usato quando Wikipedia non è disponibile
+    public String getStale(String key) {
+        long oldest = System.currentTimeMillis() - staleMillis;
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > oldest) {
+                staleHits.incrementAndGet();
+                return entry.value();
+            }
+        }
+
+        if (persistent) {
+            Database.CacheEntry stored = Database.getInstance().getCacheEntry(key, oldest);
+            if (stored != null) {
+                staleHits.incrementAndGet();
+                return stored.value();
+            }
+        }
+
+        return null;
+    }
+
+    public void put(String key, String value) {
+        if (value == null) return;
+
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (entries) {
+            entries.put(key, new Entry(value, expiresAt));
+        }
+
+        if (persistent) {
+            Database.getInstance().putCacheEntry(key, value, expiresAt);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // Getters contatori
+    public long getHits() { return hits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getExpirations() { return expirations.get(); }
+    public long getStaleHits() { return staleHits.get(); }
+
+    public double getHitRate() {
+        long total = hits.get() + diskHits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) (hits.get() + diskHits.get()) / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LookupCache[size=%d/%d, hits=%d, diskHits=%d, misses=%d, evictions=%d, expirations=%d, staleHits=%d, hitRate=%.1f%%]",
+                size(), maxEntries, getHits(), getDiskHits(), getMisses(), getEvictions(), getExpirations(),
+                getStaleHits(), getHitRate() * 100);
+    }
+}
@@ -1,15 +1,121 @@
+import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.TelegramBotsLongPollingApplication;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
     public static void main(String[] args) {
+        long startedAt = System.nanoTime();
         String botToken = Config.get("BOT_TOKEN");
-        try (TelegramBotsLongPollingApplication botsApplication = new TelegramBotsLongPollingApplication()) {
-            botsApplication.registerBot(botToken, new CarFantasyBot(botToken));
-            System.out.println("CarFantasyBot avviato con successo!");
+        String mode = Config.get("BOT_MODE", "polling").trim().toLowerCase();
+
+        // Un READY_FILE rimasto da un processo terminato male non deve segnalare pronto durante il warm-up
+        markReady(false);
+
+        try {
+            // Il costruttore prepara database, cache e connessioni prima di ricevere update
+            CarFantasyBot bot = new CarFantasyBot(botToken);
+
+            AutoCloseable intake = mode.equals("webhook") ?
+                    startWebhook(botToken, bot) :
+                    startLongPolling(botToken, bot);
+
+            // SIGTERM / Ctrl+C: chiusura ordinata
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(bot, intake), "shutdown"));
+
+            if (intake instanceof WebhookServer server) {
+                server.setReady(true);
+            }
+            markReady(true);
+            System.out.println("✓ CarFantasyBot avviato con successo in " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms (" + mode + ")");
+
             Thread.currentThread().join();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    private static AutoCloseable startLongPolling(String botToken, CarFantasyBot bot) throws Exception {
+        TelegramBotsLongPollingApplication botsApplication = new TelegramBotsLongPollingApplication();
+        botsApplication.registerBot(botToken, bot);
+        return botsApplication;
+    }
+
+    private static AutoCloseable startWebhook(String botToken, CarFantasyBot bot) throws Exception {
+        String url = Config.get("WEBHOOK_URL");
+        String path = Config.get("WEBHOOK_PATH", "/telegram");
+        String secret = Config.get("WEBHOOK_SECRET");
+        // Senza secret chiunque potrebbe inviare update falsi: se manca se ne genera uno casuale,
+        // registrato su Telegram insieme al webhook (cambia a ogni avvio)
+        if (secret == null || secret.isBlank()) {
+            secret = randomSecret();
+            System.out.println("ℹ WEBHOOK_SECRET non impostato: generato un secret token casuale");
+        }
+
+        WebhookServer server = new WebhookServer(bot, Config.getInt("WEBHOOK_PORT", 8080), path, secret);
+        server.start();
+
+        // Senza WEBHOOK_URL il server resta solo locale (es. per provare con update registrati)
+        if (url != null && !url.isBlank()) {
+            new OkHttpTelegramClient(botToken).execute(SetWebhook.builder()
+                    .url(url)
+                    .secretToken(secret)
+                    .build());
+            System.out.println("✓ Webhook registrato: " + url);
+        }
+        return server;
+    }
+
+    // 32 byte casuali in Base64 URL-safe: solo caratteri ammessi da Telegram (A-Z, a-z, 0-9, _ e -)
+    private static String randomSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Segnale di prontezza valido in entrambe le modalità (in polling non c'è un server HTTP da interrogare):
+    // READY_FILE viene creato quando il bot riceve update e cancellato all'inizio della chiusura
+    private static void markReady(boolean ready) {
+        String readyFile = Config.get("READY_FILE");
+        if (readyFile == null || readyFile.isBlank()) {
+            return;
+        }
+
+        Path path = Path.of(readyFile);
+        try {
+            if (ready) {
+                Files.writeString(path, ProcessHandle.current().pid() + System.lineSeparator());
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Impossibile aggiornare READY_FILE " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Ferma la ricezione, smaltisce update e invii in corso entro SHUTDOWN_TIMEOUT_MS,
+    // salva i dati in sospeso e chiude le risorse
+    private static void shutdown(CarFantasyBot bot, AutoCloseable intake) {
+        long startedAt = System.nanoTime();
+        System.out.println("Chiusura in corso...");
+        markReady(false);
+
+        try {
+            intake.close();
+        } catch (Exception e) {
+            System.err.println("Errore arresto ricezione update: " + e.getMessage());
+        }
+
+        boolean drained = bot.shutdown(Config.getLong("SHUTDOWN_TIMEOUT_MS", 10_000));
+        System.out.println("CarFantasyBot chiuso in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) +
+                " ms" + (drained ? "" : " (alcune operazioni non completate)"));
+    }
 }
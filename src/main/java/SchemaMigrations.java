@@ -0,0 +1,172 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Migrazioni dello schema, numerate e applicate in ordine sopra le tabelle di base
+// (Database.createTables). La versione raggiunta è salvata in PRAGMA user_version:
+// ogni migrazione gira una sola volta, in una transazione, ed è scritta per poter essere ripetuta
+public final class SchemaMigrations {
+
+    @FunctionalInterface
+    private interface Step {
+        void run(Connection connection) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+
+    // Aggiungere sempre in fondo, con la versione successiva; mai modificare quelle già rilasciate
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "indice dei preferiti per utente e data", sql(
+                    "CREATE INDEX IF NOT EXISTS idx_favorites_user_added ON Favorites (UserId, AddedAt DESC, CarName)"
+            )),
+            new Migration(2, "indice delle scadenze della cache ricerche", sql(
+                    "CREATE INDEX IF NOT EXISTS idx_lookup_cache_expires ON LookupCache (ExpiresAt)"
+            )),
+            new Migration(3, "indice dei titoli più cercati", sql(
+                    "CREATE INDEX IF NOT EXISTS idx_resolved_titles_hits ON ResolvedTitles (Hits DESC)"
+            )),
+            new Migration(4, "catalogo delle auto risolte su Wikipedia", sql("""
+                    CREATE TABLE IF NOT EXISTS Cars (
+                        CarId INTEGER PRIMARY KEY AUTOINCREMENT,
+                        Title TEXT NOT NULL,
+                        Lang TEXT NOT NULL,
+                        Summary TEXT,
+                        ImageUrl TEXT,
+                        InfoboxJson TEXT,
+                        FetchedAt INTEGER,
+                        UNIQUE(Title, Lang)
+                    )
+                    """
+            )),
+            new Migration(5, "preferiti collegati al catalogo", SchemaMigrations::linkFavoritesToCars)
+    );
+
+    // Passo composto solo da istruzioni SQL
+    private static Step sql(String... statements) {
+        return connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                for (String statement : statements) {
+                    stmt.execute(statement);
+                }
+            }
+        };
+    }
+
+    // Favorites.CarId: i nomi già salvati (scritti dall'utente) vengono collegati al titolo risolto
+    // con lo stesso nome (senza distinzione di maiuscole); quelli mai risolti diventano voci del catalogo
+    // senza lingua. I doppioni dello stesso utente ("ferrari f40" e "Ferrari F40") vengono uniti e la tabella
+    // viene ricostruita: il vincolo UNIQUE(UserId, CarName) diventa UNIQUE(UserId, CarId)
+    private static void linkFavoritesToCars(Connection connection) throws SQLException {
+        if (!hasColumn(connection, "Favorites", "CarId")) {
+            sql("ALTER TABLE Favorites ADD COLUMN CarId INTEGER REFERENCES Cars(CarId)").run(connection);
+        }
+
+        sql("""
+                INSERT INTO Cars (Title, Lang, ImageUrl)
+                SELECT r.Title, r.Lang, r.ImageUrl FROM ResolvedTitles r
+                WHERE EXISTS (SELECT 1 FROM Favorites f WHERE f.CarId IS NULL AND f.CarName = r.Title COLLATE NOCASE)
+                ON CONFLICT(Title, Lang) DO NOTHING
+                """,
+                """
+                UPDATE Favorites SET CarId = (
+                    SELECT c.CarId FROM Cars c
+                    JOIN ResolvedTitles r ON r.Title = c.Title AND r.Lang = c.Lang
+                    WHERE c.Title = Favorites.CarName COLLATE NOCASE
+                    ORDER BY r.Hits DESC LIMIT 1)
+                WHERE CarId IS NULL
+                """,
+                """
+                INSERT INTO Cars (Title, Lang)
+                SELECT DISTINCT CarName, '' FROM Favorites WHERE CarId IS NULL
+                ON CONFLICT(Title, Lang) DO NOTHING
+                """,
+                """
+                UPDATE Favorites SET CarId = (SELECT CarId FROM Cars WHERE Title = Favorites.CarName AND Lang = '')
+                WHERE CarId IS NULL
+                """,
+                // SQLite non modifica i vincoli di una tabella esistente: nuova tabella, copia, scambio
+                "DROP TABLE IF EXISTS Favorites_new",
+                """
+                CREATE TABLE Favorites_new (
+                    FavoriteId INTEGER PRIMARY KEY AUTOINCREMENT,
+                    UserId INTEGER NOT NULL,
+                    CarName TEXT NOT NULL,
+                    AddedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    CarId INTEGER NOT NULL REFERENCES Cars(CarId),
+                    FOREIGN KEY (UserId) REFERENCES Users(UserId),
+                    UNIQUE(UserId, CarId)
+                )
+                """,
+                // Per ogni utente e auto resta il preferito più vecchio, con il titolo del catalogo
+                """
+                INSERT INTO Favorites_new (FavoriteId, UserId, CarName, AddedAt, CarId)
+                SELECT f.FavoriteId, f.UserId, c.Title, f.AddedAt, f.CarId
+                FROM Favorites f JOIN Cars c ON c.CarId = f.CarId
+                WHERE f.FavoriteId IN (SELECT MIN(FavoriteId) FROM Favorites GROUP BY UserId, CarId)
+                """,
+                "DROP TABLE Favorites",
+                "ALTER TABLE Favorites_new RENAME TO Favorites",
+                // La lista dei preferiti ora legge CarId: sostituisce l'indice della migrazione 1 (eliminato con la tabella)
+                "CREATE INDEX IF NOT EXISTS idx_favorites_user_added_car ON Favorites (UserId, AddedAt DESC, CarId)"
+        ).run(connection);
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private SchemaMigrations() {
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Applica le migrazioni mancanti; restituisce quante ne sono state applicate
+    public static int apply(Connection connection) throws SQLException {
+        int current = currentVersion(connection);
+        if (current > latestVersion()) {
+            System.err.println("⚠ Schema del database più recente del bot (versione " + current +
+                    ", attesa " + latestVersion() + ")");
+            return 0;
+        }
+
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) continue;
+
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                migration.step().run(connection);
+                // user_version è transazionale: se la migrazione fallisce resta alla versione precedente
+                stmt.execute("PRAGMA user_version = " + migration.version());
+                connection.commit();
+                System.out.println("✓ Migrazione " + migration.version() + ": " + migration.description());
+                applied++;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Migrazione " + migration.version() + " fallita: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        return applied;
+    }
+}
@@ -1,8 +1,15 @@
 public class SearchResult {
     private boolean hasError;
+    private boolean upstreamError;
+    // Risultato parziale: il tempo a disposizione è finito prima di avere tutti i dati
+    private boolean degraded;
     private String errorMessage;
     private String imageUrl;
     private String caption;
+    // Pagina di Wikipedia risolta e sua voce nel catalogo (Cars), se disponibili
+    private String title;
+    private String lang;
+    private Long carId;
 
     public SearchResult() {
         this.hasError = false;
@@ -16,6 +23,13 @@ public class SearchResult {
         return result;
     }
 
+    // Costruttore per errore di Wikipedia (throttling / non disponibile), distinto da "nessun risultato"
+    public static SearchResult upstreamError(String errorMessage) {
+        SearchResult result = error(errorMessage);
+        result.upstreamError = true;
+        return result;
+    }
+
     // Costruttore per successo con immagine
     public static SearchResult successWithImage(String imageUrl, String caption) {
         SearchResult result = new SearchResult();
@@ -31,10 +45,29 @@ public class SearchResult {
         return result;
     }
 
+    // Segna il risultato come parziale (non va messo in cache)
+    public SearchResult asDegraded() {
+        this.degraded = true;
+        return this;
+    }
+
+    // Collega il risultato alla pagina risolta (carId null se il catalogo non è disponibile)
+    public SearchResult forPage(String title, String lang, Long carId) {
+        this.title = title;
+        this.lang = lang;
+        this.carId = carId;
+        return this;
+    }
+
     // Getters
     public boolean hasError() { return hasError; }
+    public boolean isUpstreamError() { return upstreamError; }
+    public boolean isDegraded() { return degraded; }
     public String getErrorMessage() { return errorMessage; }
     public boolean hasImage() { return imageUrl != null && !imageUrl.isEmpty(); }
     public String getImageUrl() { return imageUrl; }
     public String getCaption() { return caption; }
+    public String getTitle() { return title; }
+    public String getLang() { return lang; }
+    public Long getCarId() { return carId; }
 }
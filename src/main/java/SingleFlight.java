@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registro delle richieste in corso: chiamanti concorrenti con la stessa chiave
+// condividono un'unica chiamata verso Wikipedia e il suo risultato.
+// Se la chiamata condivisa viene annullata (es. ramo perdente della ricerca parallela)
+// o finisce il tempo di chi la esegue, chi era in attesa non ne eredita l'esito
+// ma ripete il caricamento per conto proprio, con la propria scadenza
+public class SingleFlight {
+    // Esito del caricamento; shared = false se vale solo per chi lo ha eseguito
+    private record Outcome(Object value, Throwable error, boolean shared) {}
+
+    private final ConcurrentHashMap<String, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+
+    // Contatori
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Loader<T> loader) throws IOException {
+        CompletableFuture<Outcome> ownFuture = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = inFlight.putIfAbsent(key, ownFuture);
+
+        if (existing != null) {
+            // Richiesta duplicata: aspettiamo il risultato della chiamata già in corso
+            coalesced.incrementAndGet();
+            Outcome outcome = await(existing);
+            if (outcome.shared()) {
+                return (T) valueOf(outcome);
+            }
+            reloads.incrementAndGet();
+            return loader.load();
+        }
+
+        executions.incrementAndGet();
+        try {
+            T value = loader.load();
+            ownFuture.complete(new Outcome(value, null, isShareable(null)));
+            return value;
+        } catch (IOException | RuntimeException e) {
+            ownFuture.complete(new Outcome(null, e, isShareable(e)));
+            throw e;
+        } finally {
+            inFlight.remove(key, ownFuture);
+            // Errori imprevisti (Error): chi attende ricarica da sé invece di restare bloccato
+            ownFuture.complete(new Outcome(null, null, false));
+        }
+    }
+
+    // L'esito di uno scope annullato o scaduto può essere parziale (risultato degradato,
+    // DeadlineExceededException): vale solo per chi lo ha calcolato
+    private static boolean isShareable(Exception error) {
+        if (error instanceof DeadlineExceededException || CallScope.isCurrentCancelled()) {
+            return false;
+        }
+        Deadline deadline = CallScope.currentDeadline();
+        return deadline == null || !deadline.isExpired();
+    }
+
+    private static Object valueOf(Outcome outcome) throws IOException {
+        Throwable error = outcome.error();
+        if (error == null) return outcome.value();
+        if (error instanceof IOException io) throw io;
+        if (error instanceof RuntimeException re) throw re;
+        throw new IOException(error);
+    }
+
+    private Outcome await(CompletableFuture<Outcome> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Richiesta interrotta", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    // Getters contatori
+    public long getExecutions() { return executions.get(); }
+    public long getCoalesced() { return coalesced.get(); }
+    public long getReloads() { return reloads.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("SingleFlight[inFlight=%d, executions=%d, coalesced=%d, reloads=%d]",
+                inFlightCount(), getExecutions(), getCoalesced(), getReloads());
+    }
+}
@@ -0,0 +1,234 @@
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Coda di invio verso Telegram: i thread che gestiscono gli update accodano gli invii
+// invece di bloccarsi sulla rete. Rispetta i limiti di Telegram (~30 msg/s globali, ~1 msg/s per chat)
+// con token bucket, dà priorità alle risposte ai callback, gestisce 429 retry_after e ritenta un numero limitato di volte
+public class TelegramSender {
+
+    @FunctionalInterface
+    public interface TelegramCall<T> {
+        T execute() throws TelegramApiException;
+    }
+
+    private static final class Job<T> {
+        final TelegramCall<T> call;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+        final boolean priority;
+
+        Job(TelegramCall<T> call, boolean priority) {
+            this.call = call;
+            this.priority = priority;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final TokenBucket globalBucket;
+    private final double chatRate;
+    private final double chatBurst;
+    private final int maxRetries;
+
+    // Coda seriale e bucket per chat, protetti da "lanes". Il bucket resta anche quando la coda
+    // si svuota (un bucket nuovo sarebbe pieno e il limite per chat non verrebbe mai applicato):
+    // viene rimosso solo quando si è ricaricato del tutto
+    private final Map<Long, ArrayDeque<Job<?>>> lanes = new HashMap<>();
+    private final Map<Long, TokenBucket> chatBuckets = new HashMap<>();
+    private final long bucketSweepNanos;
+    private long nextBucketSweep;
+
+    // Metriche
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public TelegramSender() {
+        double globalRate = Config.getInt("TELEGRAM_GLOBAL_RATE", 30);
+        this.globalBucket = new TokenBucket(globalRate, globalRate);
+        this.chatRate = Config.getInt("TELEGRAM_CHAT_RATE", 1);
+        this.chatBurst = Config.getInt("TELEGRAM_CHAT_BURST", 3);
+        this.maxRetries = Config.getInt("TELEGRAM_MAX_RETRIES", 3);
+        // Tempo per ricaricare del tutto un bucket per chat (almeno un secondo)
+        this.bucketSweepNanos = (long) (TimeUnit.SECONDS.toNanos(1) * Math.max(1.0, chatBurst / chatRate));
+        this.nextBucketSweep = System.nanoTime() + bucketSweepNanos;
+    }
+
+    // Invio verso una chat: in ordine rispetto agli altri invii della stessa chat
+    public <T> CompletableFuture<T> enqueue(long chatId, TelegramCall<T> call) {
+        Job<T> job = new Job<>(call, false);
+        queueDepth.incrementAndGet();
+
+        boolean startLane;
+        synchronized (lanes) {
+            ArrayDeque<Job<?>> lane = lanes.get(chatId);
+            startLane = lane == null;
+            if (startLane) {
+                lane = new ArrayDeque<>();
+                lanes.put(chatId, lane);
+            }
+            lane.add(job);
+        }
+
+        if (startLane) {
+            executor.execute(() -> drain(chatId));
+        }
+        return job.future;
+    }
+
+    // Invio prioritario (risposte ai callback, inline query): non aspetta la coda della chat
+    public <T> CompletableFuture<T> enqueuePriority(TelegramCall<T> call) {
+        Job<T> job = new Job<>(call, true);
+        queueDepth.incrementAndGet();
+        executor.execute(() -> run(job, null));
+        return job.future;
+    }
+
+    private void drain(long chatId) {
+        while (true) {
+            Job<?> job;
+            TokenBucket chatBucket;
+            synchronized (lanes) {
+                ArrayDeque<Job<?>> lane = lanes.get(chatId);
+                job = lane.poll();
+                if (job == null) {
+                    lanes.remove(chatId);
+                    sweepIdleBuckets();
+                    lanes.notifyAll();
+                    return;
+                }
+                chatBucket = chatBuckets.computeIfAbsent(chatId, id -> new TokenBucket(chatRate, chatBurst));
+            }
+            run(job, chatBucket);
+        }
+    }
+
+    // Chiamato con il lock di "lanes": al massimo una volta per intervallo, rimuove i bucket
+    // delle chat senza invii in coda che si sono ricaricati del tutto
+    private void sweepIdleBuckets() {
+        long now = System.nanoTime();
+        if (now - nextBucketSweep < 0) return;
+        nextBucketSweep = now + bucketSweepNanos;
+
+        chatBuckets.entrySet().removeIf(entry -> !lanes.containsKey(entry.getKey()) && entry.getValue().isFull());
+    }
+
+    private <T> void run(Job<T> job, TokenBucket chatBucket) {
+        try {
+            for (int attempt = 0; ; attempt++) {
+                if (chatBucket != null) chatBucket.acquire();
+                globalBucket.acquire(job.priority);
+
+                try {
+                    T result = job.call.execute();
+                    sent.incrementAndGet();
+                    recordLatency(job);
+                    job.future.complete(result);
+                    return;
+                } catch (TelegramApiRequestException e) {
+                    Integer code = e.getErrorCode();
+                    boolean tooManyRequests = code != null && code == 429;
+                    boolean serverError = code != null && code >= 500;
+
+                    if ((!tooManyRequests && !serverError) || attempt >= maxRetries) {
+                        throw e;
+                    }
+
+                    long waitMs = 500L << attempt;
+                    if (tooManyRequests) {
+                        rateLimited.incrementAndGet();
+                        if (e.getParameters() != null && e.getParameters().getRetryAfter() != null) {
+                            waitMs = TimeUnit.SECONDS.toMillis(e.getParameters().getRetryAfter());
+                        }
+                    }
+                    retried.incrementAndGet();
+                    Thread.sleep(waitMs);
+                } catch (TelegramApiException e) {
+                    // Errore di rete: nuovo tentativo con backoff
+                    if (attempt >= maxRetries) throw e;
+                    retried.incrementAndGet();
+                    Thread.sleep(500L << attempt);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            job.future.completeExceptionally(e);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            job.future.completeExceptionally(e);
+        } finally {
+            queueDepth.decrementAndGet();
+        }
+    }
+
+    // Attende, entro timeoutMs, che gli invii in coda siano completati e ferma i thread.
+    // Restituisce false se alla scadenza restavano invii in sospeso
+    public boolean shutdown(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (queueDepth.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean drained = queueDepth.get() == 0;
+        if (drained) {
+            executor.shutdown();
+        } else {
+            System.err.println("TelegramSender: " + queueDepth.get() + " invii non completati entro " + timeoutMs + " ms");
+            executor.shutdownNow();
+        }
+        return drained;
+    }
+
+    private void recordLatency(Job<?> job) {
+        long latency = System.nanoTime() - job.enqueuedAt;
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    // Getters metriche
+    public int getQueueDepth() { return queueDepth.get(); }
+    public long getSent() { return sent.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getRetried() { return retried.get(); }
+    public long getRateLimited() { return rateLimited.get(); }
+
+    public int getChatBucketCount() {
+        synchronized (lanes) {
+            return chatBuckets.size();
+        }
+    }
+
+    public double getAverageLatencyMs() {
+        long count = sent.get();
+        return count == 0 ? 0.0 : totalLatencyNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxLatencyMs() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TelegramSender[queued=%d, sent=%d, failed=%d, retried=%d, rateLimited=%d, chatBuckets=%d, avgLatency=%.1fms, maxLatency=%.1fms]",
+                getQueueDepth(), getSent(), getFailed(), getRetried(), getRateLimited(), getChatBucketCount(),
+                getAverageLatencyMs(), getMaxLatencyMs());
+    }
+}
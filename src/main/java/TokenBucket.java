@@ -0,0 +1,71 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Token bucket bloccante: "rate" token al secondo, al massimo "capacity" accumulati.
+// Chi acquisisce con priorità passa davanti a chi è in attesa senza priorità
+public class TokenBucket {
+    private final double ratePerNano;
+    private final double capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    // Stato protetto da lock
+    private double tokens;
+    private long lastRefill;
+    private int priorityWaiters;
+
+    public TokenBucket(double ratePerSecond, double capacity) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        acquire(false);
+    }
+
+    public void acquire(boolean priority) throws InterruptedException {
+        lock.lock();
+        try {
+            if (priority) priorityWaiters++;
+            try {
+                while (true) {
+                    refill();
+                    boolean myTurn = priority || priorityWaiters == 0;
+                    if (myTurn && tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    long waitNanos = tokens >= 1 ? TimeUnit.MILLISECONDS.toNanos(1) :
+                            (long) Math.ceil((1 - tokens) / ratePerNano);
+                    available.awaitNanos(Math.max(waitNanos, 1));
+                }
+            } finally {
+                if (priority) priorityWaiters--;
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bucket ricaricato del tutto: equivalente a uno appena creato
+    public boolean isFull() {
+        lock.lock();
+        try {
+            refill();
+            return tokens >= capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,193 @@
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Elaborazione concorrente degli update su virtual thread:
+// update della stessa chat restano in ordine (una coda seriale per chat),
+// chat diverse procedono in parallelo entro un limite di update in esecuzione.
+// Quando la coda totale è piena submit() blocca il thread di polling (backpressure)
+public class UpdateDispatcher {
+    private final Consumer<Update> handler;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Posti in coda (backpressure) e update in esecuzione contemporaneamente
+    private final int maxQueued;
+    private final int maxInFlight;
+    private final Semaphore queueSlots;
+    private final Semaphore inFlightSlots;
+
+    // Coda seriale per chat, protetta da "lanes"
+    private final Map<Long, ArrayDeque<Update>> lanes = new HashMap<>();
+    private volatile boolean accepting = true;
+
+    // Contatori
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong throttledSubmits = new AtomicLong();
+
+    public UpdateDispatcher(Consumer<Update> handler) {
+        this.handler = handler;
+        this.maxQueued = Config.getInt("UPDATE_MAX_QUEUED", 1000);
+        this.maxInFlight = Config.getInt("UPDATE_MAX_IN_FLIGHT", 32);
+        this.queueSlots = new Semaphore(maxQueued);
+        this.inFlightSlots = new Semaphore(maxInFlight);
+    }
+
+    // Accoda un update; se la coda è piena attende che si liberi un posto
+    public void submit(Update update) {
+        if (!accepting) {
+            System.err.println("Update " + update.getUpdateId() + " ignorato: dispatcher in chiusura");
+            return;
+        }
+
+        if (!queueSlots.tryAcquire()) {
+            throttledSubmits.incrementAndGet();
+            try {
+                queueSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Update " + update.getUpdateId() + " perso: attesa interrotta");
+                return;
+            }
+        }
+        submitted.incrementAndGet();
+
+        long chatKey = chatKey(update);
+        boolean startLane;
+        synchronized (lanes) {
+            ArrayDeque<Update> lane = lanes.get(chatKey);
+            startLane = lane == null;
+            if (startLane) {
+                lane = new ArrayDeque<>();
+                lanes.put(chatKey, lane);
+            }
+            lane.add(update);
+        }
+
+        if (startLane) {
+            executor.execute(() -> drain(chatKey));
+        }
+    }
+
+    // Elabora in ordine gli update di una chat finché la sua coda non è vuota
+    private void drain(long chatKey) {
+        while (true) {
+            Update update;
+            synchronized (lanes) {
+                ArrayDeque<Update> lane = lanes.get(chatKey);
+                update = lane.poll();
+                if (update == null) {
+                    lanes.remove(chatKey);
+                    lanes.notifyAll();
+                    return;
+                }
+            }
+
+            try {
+                inFlightSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                handler.accept(update);
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("Errore elaborazione update " + update.getUpdateId() + ": " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                inFlightSlots.release();
+                queueSlots.release();
+            }
+        }
+    }
+
+    // Chiave di ordinamento: la chat (o l'utente per le inline query)
+    private static long chatKey(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom().getId();
+        }
+        if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getFrom().getId();
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage().getChatId();
+        }
+        // Nessuna chat: nessun vincolo di ordine
+        return Long.MIN_VALUE + update.getUpdateId();
+    }
+
+    // Smette di accettare update e attende, entro timeoutMs, che quelli già ricevuti siano elaborati.
+    // Restituisce false se alla scadenza restavano update in sospeso
+    public boolean shutdown(long timeoutMs) {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        boolean drained;
+        synchronized (lanes) {
+            while (!lanes.isEmpty()) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) break;
+                try {
+                    lanes.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            drained = lanes.isEmpty();
+        }
+
+        if (drained) {
+            executor.shutdown();
+        } else {
+            System.err.println("Dispatcher: " + queuedCount() + " update non elaborati entro " + timeoutMs + " ms");
+            executor.shutdownNow();
+        }
+        return drained;
+    }
+
+    public int queuedCount() {
+        return maxQueued - queueSlots.availablePermits();
+    }
+
+    public int inFlightCount() {
+        return maxInFlight - inFlightSlots.availablePermits();
+    }
+
+    public int activeChats() {
+        synchronized (lanes) {
+            return lanes.size();
+        }
+    }
+
+    // Getters contatori
+    public long getSubmitted() { return submitted.get(); }
+    public long getProcessed() { return processed.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getThrottledSubmits() { return throttledSubmits.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("UpdateDispatcher[queued=%d/%d, inFlight=%d/%d, chats=%d, submitted=%d, processed=%d, failed=%d, throttledSubmits=%d]",
+                queuedCount(), maxQueued, inFlightCount(), maxInFlight, activeChats(),
+                getSubmitted(), getProcessed(), getFailed(), getThrottledSubmits());
+    }
+}
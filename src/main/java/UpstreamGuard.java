@@ -0,0 +1,271 @@
+import okhttp3.Call;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Protezione delle chiamate verso Wikipedia:
+// - limite di concorrenza adattivo (AIMD: +1/limite a ogni successo, dimezzato a ogni sovraccarico)
+// - attesa rispettando Retry-After su 429/503
+// - circuit breaker che fallisce subito mentre Wikipedia non risponde
+public class UpstreamGuard {
+
+    private enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxQueueWaitMs;
+    private final long maxRetryAfterMs;
+    private final int maxRetries;
+    private final int failureThreshold;
+    private final long openMs;
+
+    // Lock esplicito (non synchronized) per non bloccare i carrier dei virtual thread in attesa
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Stato protetto da lock
+    private double limit;
+    private int inFlight;
+    private long backoffUntil;
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean probeInFlight;
+
+    // Contatori
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong circuitOpened = new AtomicLong();
+
+    public UpstreamGuard() {
+        this.limit = Config.getInt("UPSTREAM_INITIAL_LIMIT", 8);
+        this.minLimit = Config.getInt("UPSTREAM_MIN_LIMIT", 1);
+        this.maxLimit = Config.getInt("UPSTREAM_MAX_LIMIT", 32);
+        this.maxQueueWaitMs = Config.getLong("UPSTREAM_MAX_QUEUE_WAIT_MS", 2_000);
+        this.maxRetryAfterMs = Config.getLong("UPSTREAM_MAX_RETRY_AFTER_MS", 3_000);
+        this.maxRetries = Config.getInt("UPSTREAM_MAX_RETRIES", 1);
+        this.failureThreshold = Config.getInt("CIRCUIT_FAILURE_THRESHOLD", 5);
+        this.openMs = Config.getLong("CIRCUIT_OPEN_MS", 30_000);
+    }
+
+    // Esegue la chiamata sotto il controllo del limitatore e del circuit breaker.
+    // Le risposte 429/5xx diventano UpstreamUnavailableException
+    public Response execute(Call call) throws IOException {
+        Call current = call;
+
+        for (int attempt = 0; ; attempt++) {
+            boolean probe = acquire();
+            Response response;
+            try {
+                response = current.execute();
+            } catch (IOException e) {
+                // OkHttp chiude le chiamate scadute (callTimeout) con cancel(): isCanceled() è vero anche
+                // per loro, ma l'eccezione è InterruptedIOException("timeout") invece di "Canceled"
+                boolean timedOut = e instanceof InterruptedIOException;
+                boolean callTimeout = timedOut && "timeout".equals(e.getMessage());
+                // Il timeout della chiamata è ridotto al tempo rimasto alla richiesta (Deadline.applyTo):
+                // se è scaduta la richiesta, non era lento Wikipedia
+                Deadline deadline = CallScope.currentDeadline();
+                boolean requestExpired = deadline != null && deadline.isExpired();
+                // Un annullamento voluto (ramo perdente, scadenza della richiesta) non è colpa di Wikipedia
+                if ((current.isCanceled() && !callTimeout) || (timedOut && requestExpired)) {
+                    release(probe, Outcome.IGNORED);
+                    throw e;
+                }
+                // Timeout = sovraccarico; errori di rete = Wikipedia non raggiungibile
+                release(probe, timedOut ? Outcome.OVERLOADED : Outcome.FAILED);
+                throw new UpstreamUnavailableException("Wikipedia non raggiungibile: " + e.getMessage(), e);
+            }
+
+            int code = response.code();
+            if (code != 429 && code < 500) {
+                release(probe, Outcome.SUCCESS);
+                return response;
+            }
+
+            long retryAfterMs = parseRetryAfter(response.header("Retry-After"));
+            response.close();
+            throttled.incrementAndGet();
+            release(probe, code == 429 || code == 503 ? Outcome.OVERLOADED : Outcome.FAILED);
+
+            if (retryAfterMs > 0) {
+                lock.lock();
+                try {
+                    backoffUntil = Math.max(backoffUntil, System.currentTimeMillis() + retryAfterMs);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            if (attempt >= maxRetries || retryAfterMs > maxRetryAfterMs) {
+                throw new UpstreamUnavailableException("Wikipedia ha risposto " + code);
+            }
+
+            // clone() riparte dal timeout del client: va riapplicato il tempo rimasto alla richiesta,
+            // e se non basta ad attendere Retry-After il nuovo tentativo è inutile
+            Deadline deadline = CallScope.currentDeadline();
+            if (deadline != null && deadline.remainingMillis() <= retryAfterMs) {
+                throw new UpstreamUnavailableException("Wikipedia ha risposto " + code + ", tempo insufficiente per riprovare");
+            }
+
+            retries.incrementAndGet();
+            current = current.clone();
+            if (deadline != null) {
+                deadline.applyTo(current);
+            }
+            CallScope.track(current);
+        }
+    }
+
+    private enum Outcome { SUCCESS, OVERLOADED, FAILED, IGNORED }
+
+    // Attende un posto libero; restituisce true se la chiamata è la sonda del circuito semi-aperto
+    private boolean acquire() throws IOException {
+        long deadline = System.currentTimeMillis() + maxQueueWaitMs;
+        // Non si attende oltre il tempo rimasto alla richiesta
+        Deadline requestDeadline = CallScope.currentDeadline();
+        if (requestDeadline != null) {
+            deadline = Math.min(deadline, System.currentTimeMillis() + requestDeadline.remainingMillis());
+        }
+
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+
+                if (state == CircuitState.OPEN) {
+                    if (now < openUntil) {
+                        rejected.incrementAndGet();
+                        throw new UpstreamUnavailableException("Circuito aperto: Wikipedia temporaneamente non disponibile");
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    probeInFlight = false;
+                }
+
+                boolean probe = state == CircuitState.HALF_OPEN;
+                boolean slotFree = probe ? !probeInFlight : inFlight < (int) limit;
+
+                if (slotFree && now >= backoffUntil) {
+                    inFlight++;
+                    if (probe) probeInFlight = true;
+                    return probe;
+                }
+
+                // Retry-After oltre la nostra attesa massima: inutile accodarsi
+                if (backoffUntil > deadline || now >= deadline) {
+                    rejected.incrementAndGet();
+                    throw new UpstreamUnavailableException("Wikipedia sovraccarica, richiesta rifiutata");
+                }
+
+                long wakeUp = Math.min(deadline, Math.max(backoffUntil, now + 1));
+                try {
+                    changed.await(Math.max(1, wakeUp - now), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Attesa interrotta");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(boolean probe, Outcome outcome) {
+        lock.lock();
+        try {
+            releaseLocked(probe, outcome);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(boolean probe, Outcome outcome) {
+        inFlight--;
+        if (probe) probeInFlight = false;
+
+        switch (outcome) {
+            case SUCCESS -> {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+                consecutiveFailures = 0;
+                state = CircuitState.CLOSED;
+            }
+            case OVERLOADED, FAILED -> {
+                if (outcome == Outcome.OVERLOADED) {
+                    limit = Math.max(minLimit, limit / 2);
+                }
+                consecutiveFailures++;
+                if (probe || consecutiveFailures >= failureThreshold) {
+                    if (state != CircuitState.OPEN) {
+                        circuitOpened.incrementAndGet();
+                        System.err.println("⚠ Circuito verso Wikipedia aperto per " + openMs + " ms");
+                    }
+                    state = CircuitState.OPEN;
+                    openUntil = System.currentTimeMillis() + openMs;
+                }
+            }
+            case IGNORED -> { }
+        }
+    }
+
+    // Retry-After: secondi oppure data HTTP
+    private static long parseRetryAfter(String header) {
+        if (header == null || header.isBlank()) return 0;
+        try {
+            return Long.parseLong(header.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                Instant at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, at.toEpochMilli() - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean isCircuitOpen() {
+        lock.lock();
+        try {
+            return state == CircuitState.OPEN && System.currentTimeMillis() < openUntil;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getters contatori
+    public long getThrottled() { return throttled.get(); }
+    public long getRejected() { return rejected.get(); }
+    public long getRetries() { return retries.get(); }
+    public long getCircuitOpened() { return circuitOpened.get(); }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format(Locale.ROOT,
+                    "UpstreamGuard[state=%s, limit=%.1f, inFlight=%d, throttled=%d, rejected=%d, retries=%d, circuitOpened=%d]",
+                    state, limit, inFlight, getThrottled(), getRejected(), getRetries(), getCircuitOpened());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
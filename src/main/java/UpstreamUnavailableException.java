@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+// Wikipedia non disponibile o in throttling (429/5xx, circuito aperto, coda piena):
+// distinta da "nessun risultato" per poter servire dati in cache o un messaggio dedicato
+public class UpstreamUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+
+    public UpstreamUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Registro utenti in memoria con scrittura differita (write-behind):
+// un utente viene scritto solo se nuovo o se username/nome sono cambiati,
+// le modifiche vengono salvate a blocchi in un'unica transazione (a intervalli o oltre una soglia)
+public final class UserRegistry implements AutoCloseable {
+    private final Map<Long, Database.UserRecord> known = new ConcurrentHashMap<>();
+    private final Map<Long, Database.UserRecord> dirty = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private final int batchSize;
+
+    // Contatori
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public UserRegistry() {
+        this(Config.getLong("USER_FLUSH_INTERVAL_MS", 5000), Config.getInt("USER_FLUSH_BATCH_SIZE", 100));
+    }
+
+    public UserRegistry(long flushIntervalMs, int batchSize) {
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-registry-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Registra un utente visto in un update: nessuna scrittura se i dati non sono cambiati
+    public void record(long userId, String username, String firstName, String lastName) {
+        Database.UserRecord user = new Database.UserRecord(userId, username, firstName, lastName);
+        Database.UserRecord previous = known.put(userId, user);
+        if (Objects.equals(previous, user)) {
+            skipped.incrementAndGet();
+            return;
+        }
+
+        updates.incrementAndGet();
+        dirty.put(userId, user);
+
+        // Soglia superata: salvataggio anticipato, fuori dal thread dell'update
+        if (dirty.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    // Salva in un'unica transazione tutti gli utenti modificati
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (dirty.isEmpty()) return;
+
+            List<Database.UserRecord> batch = new ArrayList<>(dirty.size());
+            for (Map.Entry<Long, Database.UserRecord> entry : dirty.entrySet()) {
+                // Rimuove solo se nel frattempo non è arrivata una versione più recente
+                if (dirty.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getValue());
+                }
+            }
+
+            boolean saved = false;
+            try {
+                saved = Database.getInstance().upsertUsers(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Errore salvataggio utenti: " + e.getMessage());
+            }
+
+            if (saved) {
+                flushes.incrementAndGet();
+                written.addAndGet(batch.size());
+            } else {
+                // Riproviamo al prossimo giro, senza sovrascrivere versioni più recenti
+                for (Database.UserRecord user : batch) {
+                    dirty.putIfAbsent(user.userId(), user);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Ferma il salvataggio periodico e salva gli utenti ancora in sospeso
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        System.out.println("✓ Registro utenti salvato (" + written.get() + " scritture in " + flushes.get() + " transazioni)");
+    }
+
+    public int pendingCount() {
+        return dirty.size();
+    }
+
+    // Getters contatori
+    public long getUpdates() { return updates.get(); }
+    public long getSkipped() { return skipped.get(); }
+    public long getFlushes() { return flushes.get(); }
+    public long getWritten() { return written.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("UserRegistry[known=%d, pending=%d, updates=%d, skipped=%d, flushes=%d, written=%d]",
+                known.size(), pendingCount(), getUpdates(), getSkipped(), getFlushes(), getWritten());
+    }
+}
@@ -0,0 +1,140 @@
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ricezione degli update via webhook: server HTTP integrato, una richiesta per virtual thread.
+// Verifica il secret token di Telegram, risponde subito 200 e passa l'update alla stessa
+// pipeline del long polling (consume di CarFantasyBot). Per provarlo in locale basta un POST
+// con il JSON di un update (o un array di update) registrato e l'header con WEBHOOK_SECRET
+public class WebhookServer implements AutoCloseable {
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final LongPollingUpdateConsumer bot;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String path;
+    // Stato per /ready: falso durante l'avvio e la chiusura
+    private volatile boolean ready;
+    private final byte[] secret;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // Contatori
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong unauthorized = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+
+    public WebhookServer(LongPollingUpdateConsumer bot, int port, String path, String secret) throws IOException {
+        this.bot = bot;
+        this.path = path;
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Secret token del webhook obbligatorio");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext(path, this::handle);
+        this.server.createContext("/ready", this::handleReady);
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    // Readiness per orchestratori e load balancer: 200 se pronto, 503 altrimenti
+    private void handleReady(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.sendResponseHeaders(ready ? 200 : 503, -1);
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("✓ Webhook in ascolto su porta " + getPort() + path);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            if (!isAuthorized(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                unauthorized.incrementAndGet();
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            List<Update> updates;
+            try (InputStream body = exchange.getRequestBody()) {
+                updates = readUpdates(body.readAllBytes());
+            } catch (IOException e) {
+                invalid.incrementAndGet();
+                System.err.println("Webhook: update non valido: " + e.getMessage());
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            // Risposta immediata: Telegram non deve aspettare l'elaborazione
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+
+            received.addAndGet(updates.size());
+            bot.consume(updates);
+        }
+    }
+
+    private List<Update> readUpdates(byte[] body) throws IOException {
+        int first = 0;
+        while (first < body.length && Character.isWhitespace(body[first])) first++;
+
+        if (first < body.length && body[first] == '[') {
+            return mapper.readValue(body, new TypeReference<List<Update>>() {});
+        }
+        return List.of(mapper.readValue(body, Update.class));
+    }
+
+    // Confronto a tempo costante del secret token
+    private boolean isAuthorized(String header) {
+        return header != null && MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+        ready = false;
+        server.stop(0);
+        executor.close();
+        System.out.println("✓ Webhook fermato");
+    }
+
+    // Porta effettiva (anche quando si chiede una porta libera con 0)
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Getters contatori
+    public long getReceived() { return received.get(); }
+    public long getUnauthorized() { return unauthorized.get(); }
+    public long getInvalid() { return invalid.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("WebhookServer[received=%d, unauthorized=%d, invalid=%d]",
+                getReceived(), getUnauthorized(), getInvalid());
+    }
+}
@@ -0,0 +1,174 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Decoder in streaming delle risposte di Wikipedia: legge solo i campi usati
+// e salta tutto il resto, senza costruire la stringa del body né l'albero JsonObject
+public final class WikiJsonReader {
+
+    // Testo e immagine dal summary API
+    public record Summary(String extract, String imageUrl) {
+        public static final Summary EMPTY = new Summary(null, null);
+    }
+
+    private WikiJsonReader() {
+    }
+
+    // generator=search (formatversion=2): query.pages[] con title, index, extract, thumbnail, categories
+    public static List<WikiPage> readSearchCandidates(Reader body, String lang) throws IOException {
+        List<WikiPage> candidates = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("query") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("pages") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                WikiPage page = readCandidate(reader, lang);
+                                if (page != null) {
+                                    candidates.add(page);
+                                }
+                            }
+                            reader.endArray();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        return candidates;
+    }
+
+    private static WikiPage readCandidate(JsonReader reader, String lang) throws IOException {
+        String title = null;
+        int index = Integer.MAX_VALUE;
+        String extract = null;
+        String imageUrl = null;
+        List<String> categories = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "title" -> title = nextStringOrNull(reader);
+                case "index" -> index = reader.nextInt();
+                case "extract" -> extract = nextStringOrNull(reader);
+                case "thumbnail" -> imageUrl = readSource(reader);
+                case "categories" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String category = readField(reader, "title");
+                        if (category != null) {
+                            categories.add(category);
+                        }
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (title == null) return null;
+
+        WikiPage page = new WikiPage(title, lang);
+        page.setIndex(index);
+        page.setExtract(extract);
+        page.setImageUrl(imageUrl);
+        page.setCategories(categories);
+        return page;
+    }
+
+    // REST page/summary: extract, thumbnail.source, originalimage.source
+    public static Summary readSummary(Reader body) throws IOException {
+        String extract = null;
+        String thumbnail = null;
+        String original = null;
+
+        try (JsonReader reader = new JsonReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "extract" -> extract = nextStringOrNull(reader);
+                    case "thumbnail" -> thumbnail = readSource(reader);
+                    case "originalimage" -> original = readSource(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        return new Summary(extract, thumbnail != null ? thumbnail : original);
+    }
+
+    // action=parse&prop=wikitext: parse.wikitext.*
+    public static String readWikitext(Reader body) throws IOException {
+        String wikitext = null;
+
+        try (JsonReader reader = new JsonReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("parse") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("wikitext") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                            wikitext = readField(reader, "*");
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        return wikitext;
+    }
+
+    // Legge { "source": ... } saltando gli altri campi
+    private static String readSource(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        return readField(reader, "source");
+    }
+
+    // Legge un singolo campo stringa da un oggetto saltando gli altri
+    private static String readField(JsonReader reader, String field) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(field)) {
+                value = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
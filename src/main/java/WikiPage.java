@@ -0,0 +1,37 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Pagina candidata restituita dalla ricerca combinata su Wikipedia
+// (titolo, lingua, categorie, miniatura ed estratto in un'unica risposta)
+public class WikiPage {
+    private String title;
+    private String lang;
+    private int index;
+    private String extract;
+    private String imageUrl;
+    private List<String> categories = new ArrayList<>();
+
+    public WikiPage() {
+    }
+
+    public WikiPage(String title, String lang) {
+        this.title = title;
+        this.lang = lang;
+    }
+
+    // Getters
+    public String getTitle() { return title; }
+    public String getLang() { return lang; }
+    public int getIndex() { return index; }
+    public String getExtract() { return extract; }
+    public String getImageUrl() { return imageUrl; }
+    public List<String> getCategories() { return categories; }
+    public boolean hasExtract() { return extract != null && !extract.isEmpty(); }
+    public boolean hasImage() { return imageUrl != null && !imageUrl.isEmpty(); }
+
+    // Setters
+    public void setIndex(int index) { this.index = index; }
+    public void setExtract(String extract) { this.extract = extract; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+    public void setCategories(List<String> categories) { this.categories = categories; }
+}
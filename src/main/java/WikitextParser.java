@@ -0,0 +1,312 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Parser del wikitext in un solo passaggio: riconosce template annidati {{...}},
+// link [[link|testo]], <ref>, commenti e produce la mappa chiave/valore già pulita
+// dei template {{Auto-caratteristiche}} e {{Auto}}
+public final class WikitextParser {
+    private static final String TECH_TEMPLATE = "auto-caratteristiche";
+    private static final String BASIC_TEMPLATE = "auto";
+
+    private final String text;
+    private final int length;
+    private int pos;
+
+    // Prima occorrenza di ciascun template
+    private Map<String, String> techSpecs;
+    private Map<String, String> basic;
+
+    // Buffer riutilizzati per chiave e valore del parametro corrente
+    private final StringBuilder key = new StringBuilder(32);
+    private final StringBuilder value = new StringBuilder(128);
+
+    private WikitextParser(String text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    // Dati della infobox: Auto-caratteristiche se presente, altrimenti Auto (fallback)
+    public static Map<String, String> parseCarInfobox(String wikitext) {
+        if (wikitext == null || wikitext.isEmpty()) return new LinkedHashMap<>();
+
+        WikitextParser parser = new WikitextParser(wikitext);
+        parser.scan();
+
+        if (parser.techSpecs != null && !parser.techSpecs.isEmpty()) {
+            return parser.techSpecs;
+        }
+        return parser.basic != null ? parser.basic : new LinkedHashMap<>();
+    }
+
+    private void scan() {
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '{' && startsWith("{{")) {
+                parseTemplate();
+                // Auto-caratteristiche ha la precedenza: trovata quella, il resto della voce non serve
+                if (techSpecs != null && !techSpecs.isEmpty()) return;
+            } else if (c == '<' && startsWith("<!--")) {
+                skipComment();
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    // pos su "{{": legge nome e parametri fino alla "}}" corrispondente
+    private void parseTemplate() {
+        pos += 2;
+        int nameStart = pos;
+        while (pos < length && text.charAt(pos) != '|' && !startsWith("}}") && !startsWith("{{")) {
+            pos++;
+        }
+        String name = text.substring(nameStart, pos).trim().toLowerCase(Locale.ROOT);
+
+        Map<String, String> target = null;
+        int maxLength = 0;
+        int minLength = 0;
+        if (name.equals(TECH_TEMPLATE) && techSpecs == null) {
+            target = techSpecs = new LinkedHashMap<>();
+            maxLength = 150;
+            minLength = 1;
+        } else if (name.equals(BASIC_TEMPLATE) && basic == null) {
+            target = basic = new LinkedHashMap<>();
+            maxLength = 100;
+            minLength = 2;
+        }
+
+        if (target == null) {
+            skipTemplateBody();
+            return;
+        }
+
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '}' && startsWith("}}")) {
+                pos += 2;
+                return;
+            }
+            if (c == '|') {
+                pos++;
+                parseParameter(target, maxLength, minLength);
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    // Salta il corpo di un template non interessante, cercando comunque template annidati
+    private void skipTemplateBody() {
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '}' && startsWith("}}")) {
+                pos += 2;
+                return;
+            }
+            if (c == '{' && startsWith("{{")) {
+                parseTemplate();
+            } else if (c == '<' && startsWith("<!--")) {
+                skipComment();
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    // pos subito dopo "|": legge "chiave = valore" fino al prossimo "|" o "}}" dello stesso livello
+    private void parseParameter(Map<String, String> target, int maxLength, int minLength) {
+        key.setLength(0);
+        value.setLength(0);
+        boolean inValue = false;
+
+        while (pos < length) {
+            char c = text.charAt(pos);
+
+            if (c == '|' || (c == '}' && startsWith("}}"))) {
+                break;
+            }
+
+            if (c == '{' && startsWith("{{")) {
+                // Template annidati (cita, converti, ...) vengono scartati
+                skipNestedTemplate();
+            } else if (c == '<' && startsWith("<!--")) {
+                skipComment();
+            } else if (c == '<' && startsWithIgnoreCase("<ref")) {
+                skipRef();
+            } else if (c == '<' && startsWithIgnoreCase("</ref>")) {
+                pos += 6;
+            } else if (c == '<' && (startsWithIgnoreCase("<nowiki") || startsWithIgnoreCase("</nowiki"))) {
+                skipTag();
+            } else if (c == '[' && startsWith("[[")) {
+                appendLinkText(inValue ? value : key);
+            } else if (c == '[' && (startsWith("[http") || startsWith("[//"))) {
+                skipExternalLink();
+            } else if (c == '\'' && startsWith("''")) {
+                while (pos < length && text.charAt(pos) == '\'') pos++;
+            } else if (c == '=' && !inValue) {
+                inValue = true;
+                pos++;
+            } else {
+                appendChar(inValue ? value : key, c);
+                pos++;
+            }
+        }
+
+        // Parametri posizionali (senza "=") ignorati
+        if (!inValue) return;
+
+        String k = normalizeKey(key);
+        String v = value.toString().trim();
+
+        // Ignora campi vuoti e trattini
+        if (k.isEmpty() || v.isEmpty() || v.equals("-") || v.equals("–") || v.length() < minLength) {
+            return;
+        }
+
+        // Tronca valori troppo lunghi
+        if (v.length() > maxLength) {
+            v = v.substring(0, maxLength - 3) + "...";
+        }
+
+        target.put(k, v);
+    }
+
+    // Salta un template annidato (con eventuali altri template al suo interno)
+    private void skipNestedTemplate() {
+        int depth = 0;
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '{' && startsWith("{{")) {
+                depth++;
+                pos += 2;
+            } else if (c == '}' && startsWith("}}")) {
+                depth--;
+                pos += 2;
+                if (depth == 0) return;
+            } else if (c == '<' && startsWith("<!--")) {
+                skipComment();
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    // [[Link|testo]] -> testo, [[testo]] -> testo (con link annidati, es. nelle didascalie).
+    // Con più "|" vale l'ultimo: [[File:x.jpg|miniatura|didascalia]] -> didascalia
+    private void appendLinkText(StringBuilder out) {
+        pos += 2;
+        int start = pos;
+        int pipe = -1;
+        int depth = 1;
+
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '[' && startsWith("[[")) {
+                depth++;
+                pos += 2;
+            } else if (c == ']' && startsWith("]]")) {
+                depth--;
+                if (depth == 0) break;
+                pos += 2;
+            } else {
+                if (c == '|' && depth == 1) {
+                    pipe = pos;
+                }
+                pos++;
+            }
+        }
+
+        int end = pos;
+        pos = Math.min(pos + 2, length);
+
+        int from = pipe >= 0 ? pipe + 1 : start;
+        for (int i = from; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '[' || c == ']') continue;
+            // Grassetto/corsivo ('' o più) rimosso, l'apostrofo singolo resta (es. "d'epoca")
+            if (c == '\'' && i + 1 < end && text.charAt(i + 1) == '\'') {
+                while (i + 1 < end && text.charAt(i + 1) == '\'') i++;
+                continue;
+            }
+            appendChar(out, c);
+        }
+    }
+
+    // [http://... etichetta] viene rimosso
+    private void skipExternalLink() {
+        int end = text.indexOf(']', pos);
+        pos = end < 0 ? length : end + 1;
+    }
+
+    private void skipComment() {
+        int end = text.indexOf("-->", pos + 4);
+        pos = end < 0 ? length : end + 3;
+    }
+
+    // <ref .../> oppure <ref ...>...</ref>
+    private void skipRef() {
+        int tagEnd = text.indexOf('>', pos);
+        if (tagEnd < 0) {
+            pos = length;
+            return;
+        }
+        if (text.charAt(tagEnd - 1) == '/') {
+            pos = tagEnd + 1;
+            return;
+        }
+        int close = findRefClose(tagEnd + 1);
+        // Senza chiusura rimuoviamo solo il tag di apertura
+        pos = close < 0 ? tagEnd + 1 : close + 6;
+    }
+
+    // "</ref>" che chiude la nota, cercato solo fino alla fine del parametro ("\n|" o "\n}}") o al
+    // prossimo <ref: una chiusura oltre appartiene a un'altra nota e il testo in mezzo non va saltato.
+    // Un solo passaggio, limitato al parametro corrente; -1 se la nota non è chiusa
+    private int findRefClose(int from) {
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                if (text.regionMatches(true, i, "</ref>", 0, 6)) return i;
+                if (text.regionMatches(true, i, "<ref", 0, 4)) return -1;
+            } else if (c == '\n' && i + 1 < length) {
+                char next = text.charAt(i + 1);
+                if (next == '|' || (next == '}' && i + 2 < length && text.charAt(i + 2) == '}')) return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void skipTag() {
+        int end = text.indexOf('>', pos);
+        pos = end < 0 ? length : end + 1;
+    }
+
+    // Aggiunge un carattere comprimendo spazi e newline in un singolo spazio
+    private static void appendChar(StringBuilder out, char c) {
+        if (Character.isWhitespace(c)) {
+            if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+                out.append(' ');
+            }
+        } else {
+            out.append(c);
+        }
+    }
+
+    private static String normalizeKey(StringBuilder raw) {
+        StringBuilder out = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            appendChar(out, c == '_' ? ' ' : Character.toLowerCase(c));
+        }
+        return out.toString().trim();
+    }
+
+    private boolean startsWith(String prefix) {
+        return text.startsWith(prefix, pos);
+    }
+
+    private boolean startsWithIgnoreCase(String prefix) {
+        return text.regionMatches(true, pos, prefix, 0, prefix.length());
+    }
+}
@@ -0,0 +1,108 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tempo per chiamata delle query dei preferiti con e senza la cache dei prepared statement
+// di CachedConnection, su un database temporaneo popolato come quello del bot.
+// Non è un test (surefire esegue solo *Test): dopo mvn test-compile
+//   java -cp target/test-classes:target/classes:<dipendenze> CachedConnectionBenchmark [utenti] [iterazioni]
+// (le dipendenze si ottengono con mvn dependency:build-classpath)
+public class CachedConnectionBenchmark {
+    // Impedisce alla JIT di eliminare le chiamate misurate
+    private static volatile long sink;
+
+    @FunctionalInterface
+    private interface Prepare {
+        PreparedStatement prepare(String sql) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Release {
+        void release(PreparedStatement statement) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        Path dir = Files.createTempDirectory("carbot-bench");
+        String url = "jdbc:sqlite:" + dir.resolve("bench.db");
+        populate(url, users);
+
+        String[][] queries = {
+                {"isFavorite", Database.IS_FAVORITE_SQL},
+                {"getFavoritesCount", Database.FAVORITES_COUNT_SQL},
+                {"getUserFavorites", Database.FAVORITES_BY_USER_SQL}
+        };
+
+        try (Connection raw = DriverManager.getConnection(url);
+             CachedConnection cached = new CachedConnection(DriverManager.getConnection(url), new AtomicLong(), new AtomicLong())) {
+            for (String[] query : queries) {
+                String sql = query[1];
+                // Senza cache: prepare e close a ogni chiamata, come prima di CachedConnection
+                double uncached = measure(iterations, users, sql, raw::prepareStatement, PreparedStatement::close);
+                // Con cache: lo statement resta aperto sulla connessione
+                double withCache = measure(iterations, users, sql, cached::prepare, statement -> {});
+
+                System.out.printf("%-20s prepare+close %7.2f µs  cache %7.2f µs  (-%.2f µs, %.1fx)%n",
+                        query[0], uncached, withCache, uncached - withCache, uncached / withCache);
+            }
+        }
+    }
+
+    // Tempo medio per chiamata in microsecondi, dopo un riscaldamento
+    private static double measure(int iterations, int users, String sql, Prepare prepare, Release release)
+            throws SQLException {
+        boolean withCar = sql.chars().filter(c -> c == '?').count() > 1;
+        for (int i = 0; i < iterations; i++) {
+            run(i, users, withCar, sql, prepare, release);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            run(i, users, withCar, sql, prepare, release);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / iterations;
+    }
+
+    private static void run(int i, int users, boolean withCar, String sql, Prepare prepare, Release release)
+            throws SQLException {
+        PreparedStatement statement = prepare.prepare(sql);
+        try {
+            statement.setLong(1, i % users + 1);
+            if (withCar) {
+                statement.setLong(2, i % 20 + 1);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    sink += rs.getLong(1);
+                }
+            }
+        } finally {
+            release.release(statement);
+        }
+    }
+
+    // Schema reale (migrazioni comprese) e una decina di preferiti per utente
+    private static void populate(String url, int users) {
+        Database database = new Database(url);
+        try {
+            Database.Car[] cars = new Database.Car[20];
+            for (int i = 0; i < cars.length; i++) {
+                cars[i] = database.upsertCar("Auto " + i, "it", "Riassunto " + i, null, null);
+            }
+            for (long userId = 1; userId <= users; userId++) {
+                for (int i = 0; i < 10; i++) {
+                    database.addFavorite(userId, cars[(int) ((userId + i) % cars.length)]);
+                }
+            }
+        } finally {
+            database.close();
+        }
+    }
+}
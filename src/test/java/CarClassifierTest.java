@@ -0,0 +1,35 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CarClassifierTest {
+    private final CarClassifier classifier = new CarClassifier();
+
+    @Test
+    void shortKeywordsMatchPluralAndHyphenatedForms() {
+        assertTrue(isCar("Compact SUVs"));
+        assertTrue(isCar("SUV-Coupé"));
+        assertTrue(isCar("Sport utility vehicle (SUV)"));
+    }
+
+    @Test
+    void shortKeywordsDoNotMatchInsideWords() {
+        assertFalse(isCar("Suvereto"));
+        assertFalse(isCar("Scarpe"));
+        assertFalse(isCar("Lunghezza degli sgt"));
+    }
+
+    @Test
+    void excludedCategoriesWinWithoutCarKeywords() {
+        assertFalse(isCar("Nati nel 1950|Attori italiani"));
+    }
+
+    private boolean isCar(String categories) {
+        WikiPage page = new WikiPage("Voce di prova", "it");
+        page.setCategories(List.of(categories.split("\\|")));
+        return classifier.isCarRelated(page, "voce di prova");
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Nomi scritti dagli utenti (bottoni vecchi, risultati senza titolo) e voci del catalogo
+class CarFantasyBotTest {
+
+    @TempDir
+    Path dir;
+
+    private String url;
+    private Database database;
+    private CarTitleIndex titleIndex;
+
+    @BeforeEach
+    void open() {
+        url = "jdbc:sqlite:" + dir.resolve("catalog.db");
+        database = new Database(url);
+        titleIndex = new CarTitleIndex(60_000);
+    }
+
+    @AfterEach
+    void close() {
+        titleIndex.close();
+        database.close();
+    }
+
+    @Test
+    void unresolvedNameLeavesCatalogUnchanged() throws SQLException {
+        database.upsertCar("Ferrari F40", "it", null, null, null);
+
+        assertNull(CarFantasyBot.findKnownCar(database, titleIndex, "ferari f4o"));
+        assertEquals(1, countCars());
+    }
+
+    @Test
+    void knownNamesMapToTheCanonicalCar() throws SQLException {
+        Database.Car f40 = database.upsertCar("Ferrari F40", "it", null, null, null);
+        titleIndex.add("Lancia Delta", "it", null, 1);
+
+        assertEquals(f40.carId(), CarFantasyBot.findKnownCar(database, titleIndex, "ferrari f40").carId());
+
+        // Titolo risolto ma non ancora nel catalogo: la voce usa il titolo canonico, non il testo scritto
+        Database.Car delta = CarFantasyBot.findKnownCar(database, titleIndex, "lancia delta");
+        assertEquals("Lancia Delta", delta.title());
+        assertEquals("it", delta.lang());
+        assertEquals(2, countCars());
+    }
+
+    private int countCars() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Cars")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
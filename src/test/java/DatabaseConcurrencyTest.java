@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Scritture e letture concorrenti sullo scrittore unico e sul pool di lettura (WAL):
+// nessuna scrittura persa, nessuna lettura fallita o che torna indietro mentre si scrive
+class DatabaseConcurrencyTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 8;
+    private static final int FAVORITES_PER_WRITER = 150;
+
+    @TempDir
+    Path dir;
+
+    private Database database;
+
+    @BeforeEach
+    void open() {
+        database = new Database("jdbc:sqlite:" + dir.resolve("stress.db"));
+    }
+
+    @AfterEach
+    void close() {
+        database.close();
+    }
+
+    @Test
+    void concurrentWritesAndReadsStayConsistent() throws Exception {
+        List<Database.Car> cars = new ArrayList<>();
+        for (int i = 0; i < FAVORITES_PER_WRITER; i++) {
+            cars.add(database.upsertCar("Auto " + i, "it", "Riassunto " + i, null, null));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+        try {
+            // Ogni scrittore aggiunge e toglie preferiti del proprio utente: alla fine ne restano due su tre
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                long userId = w + 1;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < FAVORITES_PER_WRITER; i++) {
+                        if (!database.addFavorite(userId, cars.get(i))) {
+                            failures.add("addFavorite " + userId + "/" + i);
+                        }
+                        if (i % 3 == 2 && !database.removeFavorite(userId, cars.get(i - 1).carId())) {
+                            failures.add("removeFavorite " + userId + "/" + (i - 1));
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            // I lettori controllano che i conteggi non diminuiscano oltre le rimozioni già fatte
+            // e che la lista non sia mai più corta di un conteggio letto prima
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                long userId = r % WRITERS + 1;
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    int lastCount = 0;
+                    while (writing.get()) {
+                        int count = database.getFavoritesCount(userId);
+                        List<Database.Car> favorites = database.getUserFavorites(userId);
+                        boolean first = database.isFavorite(userId, cars.get(0).carId());
+                        if (count + 1 < lastCount || favorites.size() + 1 < count || (count > 0 && !first)) {
+                            failures.add("lettura incoerente per " + userId + ": count=" + count +
+                                    ", prima=" + lastCount + ", lista=" + favorites.size() + ", primo=" + first);
+                        }
+                        lastCount = Math.max(lastCount, count);
+                        reads.addAndGet(3);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " errori, es. " + failures.peek());
+        assertTrue(reads.get() > 0);
+
+        int expected = FAVORITES_PER_WRITER - FAVORITES_PER_WRITER / 3;
+        for (long userId = 1; userId <= WRITERS; userId++) {
+            assertEquals(expected, database.getFavoritesCount(userId));
+            assertEquals(expected, database.getUserFavorites(userId).size());
+        }
+    }
+
+    @Test
+    void readsDoNotWaitForConcurrentWrites() throws Exception {
+        Database.Car car = database.upsertCar("Auto", "it", null, null, null);
+        database.addFavorite(1, car);
+
+        // Una raffica di scritture in transazione sullo scrittore unico...
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writes = executor.submit(() -> {
+                List<Database.ResolvedTitle> titles = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    titles.add(new Database.ResolvedTitle("Titolo " + i, "it", null, 1));
+                }
+                for (int round = 0; round < 5; round++) {
+                    database.recordResolvedTitles(titles);
+                }
+            });
+
+            // ...mentre le letture dal pool continuano a vedere l'ultimo stato confermato
+            int checks = 0;
+            while (!writes.isDone()) {
+                assertTrue(database.isFavorite(1, car.carId()));
+                assertEquals(1, database.getFavoritesCount(1));
+                checks++;
+            }
+            writes.get();
+            assertTrue(checks > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Parser a espressioni regolari usato prima di WikitextParser (copia del vecchio
+// CarApiService.parseInfobox, senza log): riferimento per il test di equivalenza e per il benchmark
+final class LegacyWikitextParser {
+
+    private LegacyWikitextParser() {
+    }
+
+    static Map<String, String> parseInfobox(String wikitext) {
+        Map<String, String> data = new LinkedHashMap<>();
+
+        // Cerca prima il template {{Auto-caratteristiche}} che contiene i dati tecnici dettagliati
+        Pattern techPattern = Pattern.compile(
+                "\\{\\{Auto-caratteristiche\\s*\\n(.*?)\\n\\}\\}",
+                Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+        );
+
+        Matcher techMatcher = techPattern.matcher(wikitext);
+
+        if (techMatcher.find()) {
+            data = parseFields(techMatcher.group(1), 150, 1);
+        }
+
+        // Se non troviamo Auto-caratteristiche, prova con l'infobox base come fallback
+        if (data.isEmpty()) {
+            Pattern autoPattern = Pattern.compile(
+                    "\\{\\{Auto\\s*\\n(.*?)\\n\\}\\}",
+                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+            );
+
+            Matcher autoMatcher = autoPattern.matcher(wikitext);
+
+            if (autoMatcher.find()) {
+                data = parseFields(autoMatcher.group(1), 100, 2);
+            }
+        }
+
+        return data;
+    }
+
+    // parseTechSpecs (150/1) e parseBasicTemplate (100/2) differivano solo per i limiti
+    private static Map<String, String> parseFields(String content, int maxLength, int minLength) {
+        Map<String, String> data = new LinkedHashMap<>();
+
+        Pattern fieldPattern = Pattern.compile(
+                "\\|\\s*([^=\\|]+?)\\s*=\\s*([^\\n\\|]*)",
+                Pattern.MULTILINE
+        );
+
+        Matcher fieldMatcher = fieldPattern.matcher(content);
+
+        while (fieldMatcher.find()) {
+            String key = fieldMatcher.group(1).trim();
+            String value = fieldMatcher.group(2).trim();
+
+            value = cleanWikiText(value);
+
+            if (key.isEmpty() || value.isEmpty() ||
+                    value.equals("-") || value.equals("–") ||
+                    value.length() < minLength || value.startsWith("<!--")) {
+                continue;
+            }
+
+            key = key.toLowerCase()
+                    .replace("_", " ")
+                    .replaceAll("\\s+", " ")
+                    .trim();
+
+            if (value.length() > maxLength) {
+                value = value.substring(0, maxLength - 3) + "...";
+            }
+
+            data.put(key, value);
+        }
+
+        return data;
+    }
+
+    private static String cleanWikiText(String text) {
+        if (text == null || text.isEmpty()) return "";
+
+        text = text.replaceAll("<!--.*?-->", "");
+
+        text = text.replaceAll("<ref[^>]*>.*?</ref>", "");
+        text = text.replaceAll("<ref[^>]*/>", "");
+        text = text.replaceAll("<ref[^>]*>", "");
+        text = text.replaceAll("</ref>", "");
+
+        text = text.replaceAll("\\{\\{[Cc]ita[^}]*\\}\\}", "");
+        text = text.replaceAll("\\{\\{[^}]+\\}\\}", "");
+
+        text = text.replaceAll("</?nowiki/?>", "");
+
+        text = text.replaceAll("\\[\\[(?:[^\\|\\]]+\\|)?([^\\]]+)\\]\\]", "$1");
+
+        text = text.replaceAll("\\[http[^\\]]+\\]", "");
+
+        text = text.replaceAll("'{2,}", "");
+
+        text = text.replaceAll("\\s+", " ");
+        text = text.replaceAll("\\n+", " ");
+
+        return text.trim();
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Schema creato da Database su un file temporaneo: versione raggiunta e piani delle query dei preferiti
+class SchemaMigrationsTest {
+
+    @TempDir
+    Path dir;
+
+    private String url;
+
+    @BeforeEach
+    void createSchema() {
+        url = "jdbc:sqlite:" + dir.resolve("schema.db");
+        new Database(url).close();
+    }
+
+    @Test
+    void favoritesQueriesUseTheirIndexes() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            assertUsesIndex(connection, Database.FAVORITES_BY_USER_SQL, "idx_favorites_user_added_car");
+            assertUsesIndex(connection, Database.FAVORITES_COUNT_SQL, "idx_favorites_user_added_car");
+            // Indice del vincolo UNIQUE(UserId, CarId)
+            assertUsesIndex(connection, Database.IS_FAVORITE_SQL, "sqlite_autoindex_Favorites");
+        }
+    }
+
+    @Test
+    void migrationsAreAppliedOnce() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(connection));
+            assertEquals(0, SchemaMigrations.apply(connection));
+        }
+
+        // Riaprire il database non ripete le migrazioni
+        new Database(url).close();
+        try (Connection connection = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(connection));
+        }
+    }
+
+    // Database della prima versione: i nomi scritti dagli utenti diventano voci del catalogo,
+    // i doppioni vengono uniti e l'unicità passa da CarName a CarId
+    @Test
+    void favoritesAreRebuiltOnTheCatalog() throws SQLException {
+        String legacyUrl = "jdbc:sqlite:" + dir.resolve("legacy.db");
+        try (Connection connection = DriverManager.getConnection(legacyUrl);
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE Favorites (
+                        FavoriteId INTEGER PRIMARY KEY AUTOINCREMENT,
+                        UserId INTEGER NOT NULL,
+                        CarName TEXT NOT NULL,
+                        AddedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        FOREIGN KEY (UserId) REFERENCES Users(UserId),
+                        UNIQUE(UserId, CarName)
+                    )
+                    """);
+            stmt.execute("""
+                    CREATE TABLE ResolvedTitles (
+                        Title TEXT NOT NULL,
+                        Lang TEXT NOT NULL,
+                        ImageUrl TEXT,
+                        Hits INTEGER NOT NULL DEFAULT 1,
+                        LastSeen TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (Title, Lang)
+                    )
+                    """);
+            stmt.execute("INSERT INTO ResolvedTitles (Title, Lang) VALUES ('Ferrari F40', 'it')");
+            stmt.execute("INSERT INTO Favorites (UserId, CarName) VALUES " +
+                    "(1, 'ferrari f40'), (1, 'Ferrari F40'), (1, 'panda 4x4'), (2, 'Ferrari F40')");
+        }
+
+        Database database = new Database(legacyUrl);
+        try {
+            List<Database.Car> first = database.getUserFavorites(1);
+            List<Database.Car> second = database.getUserFavorites(2);
+            assertEquals(2, first.size());
+            assertEquals(List.of("Ferrari F40"), second.stream().map(Database.Car::title).toList());
+            assertEquals("it", second.get(0).lang());
+            // Mai risolto: resta il nome scritto dall'utente, senza lingua
+            assertTrue(first.stream().anyMatch(car -> car.title().equals("panda 4x4") && car.lang().isEmpty()));
+
+            // Stesso nome ma auto diversa: ammesso; stessa auto due volte: no
+            Database.Car other = database.upsertCar("ferrari f40", "en", null, null, null);
+            assertTrue(database.addFavorite(2, other));
+            assertFalse(database.addFavorite(2, second.get(0)));
+            assertEquals(2, database.getFavoritesCount(2));
+        } finally {
+            database.close();
+        }
+    }
+
+    // Nessuna scansione né ordinamento temporaneo, e l'indice atteso è quello usato
+    private static void assertUsesIndex(Connection connection, String sql, String index) throws SQLException {
+        List<String> plan = queryPlan(connection, sql);
+        String description = String.join(" | ", plan);
+
+        assertFalse(plan.isEmpty(), "Piano vuoto");
+        assertTrue(plan.stream().noneMatch(step -> step.startsWith("SCAN") || step.contains("TEMP B-TREE")),
+                () -> "Piano senza indice: " + description);
+        assertTrue(description.contains(index), () -> "Indice " + index + " non usato: " + description);
+    }
+
+    // Righe di EXPLAIN QUERY PLAN (parametri non valorizzati)
+    private static List<String> queryPlan(Connection connection, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+        }
+        return plan;
+    }
+}
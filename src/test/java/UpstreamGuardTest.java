@@ -0,0 +1,85 @@
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Timeout delle chiamate: quelli dell'endpoint sono sovraccarico di Wikipedia,
+// quelli dovuti al tempo esaurito della richiesta non toccano limite e circuito
+class UpstreamGuardTest {
+    private static final int CALLS = 6;
+
+    private HttpServer server;
+    private OkHttpClient client;
+
+    @BeforeEach
+    void startSlowServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                Thread.sleep(2_000);
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Test
+    void requestDeadlineTimeoutsAreIgnored() throws Exception {
+        UpstreamGuard guard = new UpstreamGuard();
+        int limit = guard.getLimit();
+
+        for (int i = 0; i < CALLS; i++) {
+            try (CallScope scope = CallScope.withDeadline(Deadline.after(100))) {
+                scope.run(() -> {
+                    Call call = client.newCall(request());
+                    CallScope.currentDeadline().applyTo(call);
+                    IOException e = assertThrows(IOException.class, () -> guard.execute(call));
+                    assertFalse(e instanceof UpstreamUnavailableException, e.toString());
+                    return null;
+                });
+            }
+        }
+
+        assertEquals(limit, guard.getLimit());
+        assertFalse(guard.isCircuitOpen());
+    }
+
+    @Test
+    void endpointTimeoutsCountAsOverload() {
+        UpstreamGuard guard = new UpstreamGuard();
+        int limit = guard.getLimit();
+        OkHttpClient slowEndpoint = client.newBuilder().callTimeout(Duration.ofMillis(100)).build();
+
+        assertThrows(UpstreamUnavailableException.class, () -> guard.execute(slowEndpoint.newCall(request())));
+
+        assertTrue(guard.getLimit() < limit);
+    }
+
+    private Request request() {
+        return new Request.Builder().url("http://127.0.0.1:" + server.getAddress().getPort() + "/").build();
+    }
+}
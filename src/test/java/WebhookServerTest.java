@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Webhook su una porta libera con un update registrato (src/test/resources/webhook)
+class WebhookServerTest {
+    private static final String SECRET = "segreto-di-prova";
+
+    private final BlockingQueue<List<Update>> consumed = new LinkedBlockingQueue<>();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private WebhookServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new WebhookServer(consumed::add, 0, "/telegram", SECRET);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void wrongOrMissingSecretIsRejected() throws Exception {
+        assertEquals(401, post("sbagliato", fixture()).statusCode());
+        assertEquals(401, post(null, fixture()).statusCode());
+
+        assertEquals(2, server.getUnauthorized());
+        assertNull(consumed.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void validUpdateReachesConsumer() throws Exception {
+        assertEquals(200, post(SECRET, fixture()).statusCode());
+
+        List<Update> updates = consumed.poll(5, TimeUnit.SECONDS);
+        assertNotNull(updates);
+        assertEquals(1, updates.size());
+        assertEquals(815024371, updates.get(0).getUpdateId());
+        assertEquals("/dettagli Ferrari F40", updates.get(0).getMessage().getText());
+    }
+
+    @Test
+    void arrayOfUpdatesAndInvalidJson() throws Exception {
+        assertEquals(200, post(SECRET, "[" + fixture() + "," + fixture() + "]").statusCode());
+        assertEquals(2, consumed.poll(5, TimeUnit.SECONDS).size());
+
+        assertEquals(400, post(SECRET, "{non json").statusCode());
+        assertEquals(1, server.getInvalid());
+    }
+
+    @Test
+    void readyFlipsWithState() throws Exception {
+        assertEquals(503, get("/ready").statusCode());
+
+        server.setReady(true);
+        assertEquals(200, get("/ready").statusCode());
+
+        server.setReady(false);
+        assertEquals(503, get("/ready").statusCode());
+    }
+
+    private HttpResponse<Void> post(String secret, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/telegram"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header("X-Telegram-Bot-Api-Secret-Token", secret);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpResponse<Void> get(String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private static String fixture() throws IOException {
+        try (InputStream in = WebhookServerTest.class.getResourceAsStream("/webhook/message-update.json")) {
+            assertNotNull(in, "Fixture mancante");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
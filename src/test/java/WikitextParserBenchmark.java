@@ -0,0 +1,58 @@
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Confronto dei tempi tra WikitextParser e il vecchio parser a regex sulle fixture del test,
+// ripetute per simulare una voce lunga (molte-note ha una nota in ogni parametro). Non è un test (surefire esegue solo *Test): dopo mvn test-compile
+//   java -cp target/test-classes:target/classes WikitextParserBenchmark [ripetizioni] [iterazioni]
+public class WikitextParserBenchmark {
+    // Impedisce alla JIT di eliminare le chiamate misurate
+    private static volatile long sink;
+
+    private static final String[] FIXTURES = {
+            "ferrari-f40.wiki", "fiat-500.wiki", "lancia-delta.wiki", "solo-caratteristiche.wiki", "molte-note.wiki"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int repeat = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        for (String name : FIXTURES) {
+            // Testo dell'articolo ripetuto per avere una voce lunga come una reale:
+            // infobox in testa (caso tipico, note seguite da tutta la voce) e infobox in fondo
+            String fixture = fixture(name);
+            String filler = fixture.replace("{{", "{ {").repeat(repeat);
+
+            print(name + " (in testa)", fixture + filler, iterations);
+            print(name + " (in fondo)", filler + fixture, iterations);
+        }
+    }
+
+    private static void print(String label, String wikitext, int iterations) {
+        double legacy = measure(iterations, () -> LegacyWikitextParser.parseInfobox(wikitext));
+        double parser = measure(iterations, () -> WikitextParser.parseCarInfobox(wikitext));
+
+        System.out.printf("%-40s %6d KB  regex %8.1f µs  parser %8.1f µs  (%.1fx)%n",
+                label, wikitext.length() / 1024, legacy, parser, legacy / parser);
+    }
+
+    // Tempo medio per chiamata in microsecondi, dopo un riscaldamento
+    private static double measure(int iterations, Supplier<Map<String, String>> parse) {
+        for (int i = 0; i < iterations; i++) {
+            sink += parse.get().size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += parse.get().size();
+        }
+        return (System.nanoTime() - start) / 1_000.0 / iterations;
+    }
+
+    private static String fixture(String name) throws Exception {
+        try (InputStream in = WikitextParserBenchmark.class.getResourceAsStream("/wikitext/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WikitextParserTest {
+
+    // Fixture (src/test/resources/wikitext) su cui il parser deve dare la stessa mappa del vecchio parser a regex
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "fiat-500.wiki",
+            "lancia-delta.wiki",
+            "solo-caratteristiche.wiki",
+            "senza-infobox.wiki",
+            "casi-limite.wiki",
+            "molte-note.wiki"
+    })
+    void matchesLegacyParser(String fixture) throws IOException {
+        String wikitext = fixture(fixture);
+
+        assertEquals(LegacyWikitextParser.parseInfobox(wikitext), WikitextParser.parseCarInfobox(wikitext));
+    }
+
+    // Unica differenza voluta: il vecchio parser troncava i valori al primo "|", anche dentro [[link|testo]]
+    @Test
+    void fixesPipedLinksCutByLegacyParser() throws IOException {
+        String wikitext = fixture("ferrari-f40.wiki");
+
+        Map<String, String> expected = new LinkedHashMap<>(LegacyWikitextParser.parseInfobox(wikitext));
+        expected.remove("cv]] a 7000 giri/min <ref name");
+        expected.put("tipomotore", "V8 biturbo a 90°");
+        expected.put("cilindrata", "2936 cm³");
+        expected.put("potenza", "478 CV a 7000 giri/min");
+
+        assertEquals(expected, WikitextParser.parseCarInfobox(wikitext));
+    }
+
+    @Test
+    void prefersTechnicalTemplateOverBasic() throws IOException {
+        Map<String, String> data = WikitextParser.parseCarInfobox(fixture("ferrari-f40.wiki"));
+
+        assertEquals("Coupé 2 porte", data.get("carrozzeria"));
+        assertEquals("centrale posteriore", data.get("posizione motore"));
+        assertEquals("1100 kg", data.get("peso a vuoto"));
+        assertTrue(!data.containsKey("costruttore"));
+    }
+
+    @Test
+    void unterminatedRefKeepsFollowingParameters() {
+        Map<String, String> data = WikitextParser.parseCarInfobox("""
+                {{Auto-caratteristiche
+                |Potenza = 200 CV<ref name="a">nota senza chiusura
+                |Coppia = 300 Nm<ref>Fonte</ref>
+                |Trazione = posteriore
+                }}
+                """);
+
+        assertEquals("200 CVnota senza chiusura", data.get("potenza"));
+        assertEquals("300 Nm", data.get("coppia"));
+        assertEquals("posteriore", data.get("trazione"));
+    }
+
+    @Test
+    void selfClosingAndMultilineRefsAreRemoved() {
+        Map<String, String> data = WikitextParser.parseCarInfobox("""
+                {{Auto-caratteristiche
+                |Potenza = 478 CV<ref name="scheda" /> a 7000 giri/min
+                |Coppia = 577 N·m<ref>{{cita web|url=http://example.org|titolo=Scheda
+                tecnica}}</ref>
+                }}
+                """);
+
+        assertEquals("478 CV a 7000 giri/min", data.get("potenza"));
+        assertEquals("577 N·m", data.get("coppia"));
+    }
+
+    @Test
+    void nestedLinksKeepTheirCaption() {
+        Map<String, String> data = WikitextParser.parseCarInfobox("""
+                {{Auto-caratteristiche
+                |Immagine = [[File:F40.jpg|miniatura|La [[Ferrari]] F40]]
+                |Costruttore = [[Ferrari|Ferrari S.p.A.]]
+                }}
+                """);
+
+        assertEquals("La Ferrari F40", data.get("immagine"));
+        assertEquals("Ferrari S.p.A.", data.get("costruttore"));
+    }
+
+    @Test
+    void stripsBoldAndItalicButKeepsApostrophes() {
+        Map<String, String> data = WikitextParser.parseCarInfobox("""
+                {{Auto-caratteristiche
+                |Tipo = '''[[Ferrari|''Ferrari'']]''' d'epoca
+                |Note = ''[[Cavallo d'Italia]]''
+                }}
+                """);
+
+        assertEquals("Ferrari d'epoca", data.get("tipo"));
+        assertEquals("Cavallo d'Italia", data.get("note"));
+    }
+
+    @Test
+    void appliesLengthLimitsOfEachTemplate() {
+        String longValue = "x".repeat(200);
+
+        Map<String, String> tech = WikitextParser.parseCarInfobox(
+                "{{Auto-caratteristiche\n|Classe = A\n|Note = " + longValue + "\n}}");
+        assertEquals("A", tech.get("classe"));
+        assertEquals(150, tech.get("note").length());
+        assertTrue(tech.get("note").endsWith("..."));
+
+        Map<String, String> basic = WikitextParser.parseCarInfobox(
+                "{{Auto\n|Classe = A\n|Segmento = B1\n|Note = " + longValue + "\n}}");
+        assertTrue(!basic.containsKey("classe"));
+        assertEquals("B1", basic.get("segmento"));
+        assertEquals(100, basic.get("note").length());
+    }
+
+    @Test
+    void emptyOrMissingInfoboxGivesEmptyMap() throws IOException {
+        assertTrue(WikitextParser.parseCarInfobox(null).isEmpty());
+        assertTrue(WikitextParser.parseCarInfobox("").isEmpty());
+        assertTrue(WikitextParser.parseCarInfobox(fixture("senza-infobox.wiki")).isEmpty());
+    }
+
+    static String fixture(String name) throws IOException {
+        try (InputStream in = WikitextParserTest.class.getResourceAsStream("/wikitext/" + name)) {
+            assertNotNull(in, "Fixture mancante: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}